@@ -1,7 +1,13 @@
 package uri;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
-import uri.implementation.UriParserImplementation;
+import uri.implementation.ParallelUriParseTask;
+import uri.implementation.StatelessUriParser;
+import uri.implementation.UriScanner;
+import uri.implementation.UriStateMachineParser;
 
 /**
  * A factory class for creating {@link UriParser} instances.
@@ -22,10 +28,128 @@ public final class UriParserFactory {
 		return null;
 		}
 
-		UriParserImplementation input =new UriParserImplementation();
+		UriStateMachineParser input =new UriStateMachineParser();
 		input.setParser(uri);
 		return input;
 
 
 	}
+
+	/**
+	 * Parses a URI with a shared, stateless parser. Unlike {@link #create},
+	 * this is safe to call from any number of threads concurrently and does
+	 * not allocate a parser object per call.
+	 *
+	 * @param uri
+	 *            The URI that will be parsed
+	 * @return the parsed {@link Uri} or {@code null} if {@code uri} is
+	 *         {@code null} or not a valid {@link Uri}
+	 */
+	public static Uri parse(CharSequence uri) {
+		if (uri == null) {
+			return null;
+		}
+		return StatelessUriParser.INSTANCE.parse(uri);
+	}
+
+	/**
+	 * Same as {@link #parse(CharSequence)} for ASCII bytes, which are not
+	 * decoded into a String first. Non-ASCII bytes make the input invalid.
+	 *
+	 * @param buf
+	 *            The array holding the URI, may be reused after the call
+	 * @param off
+	 *            The index of the first byte of the URI
+	 * @param len
+	 *            The number of bytes of the URI
+	 * @return the parsed {@link Uri} or {@code null} if {@code buf} is
+	 *         {@code null} or the bytes are not a valid {@link Uri}
+	 */
+	public static Uri parseBytes(byte[] buf, int off, int len) {
+		if (buf == null) {
+			return null;
+		}
+		return StatelessUriParser.INSTANCE.parse(buf, off, len);
+	}
+
+	/**
+	 * Same as {@link #parseBytes(byte[], int, int)} for the remaining bytes of
+	 * a heap or direct buffer. The position of {@code buf} is not changed.
+	 *
+	 * @param buf
+	 *            The buffer holding the URI, may be reused after the call
+	 * @return the parsed {@link Uri} or {@code null} if {@code buf} is
+	 *         {@code null} or the bytes are not a valid {@link Uri}
+	 */
+	public static Uri parseBytes(ByteBuffer buf) {
+		if (buf == null) {
+			return null;
+		}
+		return StatelessUriParser.INSTANCE.parse(buf);
+	}
+
+	/**
+	 * Checks a URI against the grammar in {@link Uri} without building a
+	 * {@link Uri} and without allocating any objects.
+	 *
+	 * @param uri
+	 *            The URI that will be checked
+	 * @return {@code true} if {@code uri} is not {@code null} and a valid
+	 *         {@link Uri}
+	 */
+	public static boolean isValid(CharSequence uri) {
+		return uri != null && UriScanner.scan(uri, null);
+	}
+
+	/**
+	 * Parses a whole batch of URIs with a single parser instance whose scratch
+	 * state is reused for every element.
+	 *
+	 * @param uris
+	 *            The URIs that will be parsed, elements may be {@code null}
+	 * @return An array with one slot per element of {@code uris}, holding the
+	 *         parsed {@link Uri} or {@code null} where the element is
+	 *         {@code null} or not a valid {@link Uri}
+	 */
+	public static Uri[] parseAll(List<String> uris) {
+		UriStateMachineParser parser = new UriStateMachineParser();
+		Uri[] result = new Uri[uris.size()];
+		int index = 0;
+		for (String uri : uris) {
+			if (uri != null) {
+				parser.setParser(uri);
+				result[index] = parser.parse();
+			}
+			index++;
+		}
+		return result;
+	}
+
+	/**
+	 * Same as {@link #parseAll(List)}, but splits the input across the common
+	 * {@link ForkJoinPool}. The result keeps the input order.
+	 *
+	 * @param uris
+	 *            The URIs that will be parsed, elements may be {@code null}
+	 * @return An array with one slot per element of {@code uris}
+	 */
+	public static Uri[] parseAllParallel(List<String> uris) {
+		return parseAllParallel(uris, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Same as {@link #parseAllParallel(List)}, but runs on the given pool.
+	 *
+	 * @param uris
+	 *            The URIs that will be parsed, elements may be {@code null}
+	 * @param pool
+	 *            The pool whose workers parse the input
+	 * @return An array with one slot per element of {@code uris}
+	 */
+	public static Uri[] parseAllParallel(List<String> uris, ForkJoinPool pool) {
+		String[] input = uris.toArray(new String[0]);
+		Uri[] result = new Uri[input.length];
+		pool.invoke(new ParallelUriParseTask(input, result, 0, input.length));
+		return result;
+	}
 }
@@ -0,0 +1,63 @@
+package uri.implementation;
+
+/**
+ * The canonical form and equality shared by the {@link CanonicalUri}
+ * implementations of this package, so they follow the same rules.
+ *
+ * The canonical form is not needed for parsing, so it is created on the
+ * first call and cached together with its hash.
+ */
+public abstract class AbstractCanonicalUri implements CanonicalUri {
+
+	private volatile String canonical;
+	private long canonicalHash;
+
+	@Override
+	public String getCanonicalForm() {
+		String result = canonical;
+		if (result == null) {
+			UriCanonicalizer canonicalizer = new UriCanonicalizer();
+			result = canonicalize(canonicalizer);
+			// the volatile write publishes the hash as well
+			canonicalHash = canonicalizer.getHash();
+			canonical = result;
+		}
+		return result;
+	}
+
+	@Override
+	public long getCanonicalHash() {
+		if (canonical == null) {
+			getCanonicalForm();
+		}
+		return canonicalHash;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+		if (!(other instanceof CanonicalUri)) {
+			return false;
+		}
+		CanonicalUri uri = (CanonicalUri) other;
+		return uri.getCanonicalHash() == getCanonicalHash() && uri.getCanonicalForm().equals(getCanonicalForm());
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(getCanonicalHash());
+	}
+
+	/**
+	 * Subclasses with faster access to their components than the getters
+	 * override this.
+	 *
+	 * @return the canonical form, its hash is taken from {@code canonicalizer}
+	 */
+	String canonicalize(UriCanonicalizer canonicalizer) {
+		return canonicalizer.canonicalize(this);
+	}
+
+}
@@ -0,0 +1,83 @@
+package uri.implementation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link CharSequence} view of a {@link ByteBuffer} region with the same
+ * byte to char mapping as {@link AsciiCharSequence}. Heap, direct and mapped
+ * buffers are read with absolute gets, the position and limit of the buffer
+ * are never changed.
+ */
+public final class AsciiBufferSequence implements CharSequence {
+
+	private ByteBuffer buffer;
+	private int offset;
+	private int length;
+
+	public AsciiBufferSequence() {
+		this(ByteBuffer.allocate(0), 0, 0);
+	}
+
+	public AsciiBufferSequence(ByteBuffer buffer, int offset, int length) {
+		wrap(buffer, offset, length);
+	}
+
+	/**
+	 * Points this view at the absolute region
+	 * {@code [offset, offset + length)} of {@code buffer}.
+	 *
+	 * @return this view
+	 */
+	public AsciiBufferSequence wrap(ByteBuffer buffer, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > buffer.capacity()) {
+			throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+		}
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+		return this;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+		}
+		return (char) (buffer.get(offset + index) & 0xff);
+	}
+
+	/**
+	 * @return the index of the first char in {@code [from, to)} that is
+	 *         neither "unreserved" nor one of the extra characters, or
+	 *         {@code to}
+	 */
+	int skipRun(int from, int to, char extra, char otherExtra) {
+		return AsciiKernels.skipRun(buffer, offset + from, offset + to, extra, otherExtra) - offset;
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || start > end || end > length) {
+			throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+		}
+		return copy(offset + start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		return copy(offset, length);
+	}
+
+	private String copy(int from, int count) {
+		byte[] bytes = new byte[count];
+		buffer.get(from, bytes);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+}
@@ -0,0 +1,77 @@
+package uri.implementation;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link CharSequence} view of a byte array region that maps every byte to
+ * the char with the same unsigned value. For ASCII input this is exactly the
+ * decoded text, bytes above 127 become chars that {@link UriScanner} rejects.
+ *
+ * The view can be moved to another region with {@link #wrap}, so one instance
+ * can be reused for many inputs without allocating.
+ */
+public final class AsciiCharSequence implements CharSequence {
+
+	private byte[] bytes;
+	private int offset;
+	private int length;
+
+	public AsciiCharSequence() {
+		this(new byte[0], 0, 0);
+	}
+
+	public AsciiCharSequence(byte[] bytes, int offset, int length) {
+		wrap(bytes, offset, length);
+	}
+
+	/**
+	 * Points this view at {@code bytes[offset, offset + length)}.
+	 *
+	 * @return this view
+	 */
+	public AsciiCharSequence wrap(byte[] bytes, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > bytes.length) {
+			throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+		}
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+		return this;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+		}
+		return (char) (bytes[offset + index] & 0xff);
+	}
+
+	/**
+	 * @return the index of the first char in {@code [from, to)} that is
+	 *         neither "unreserved" nor one of the extra characters, or
+	 *         {@code to}
+	 */
+	int skipRun(int from, int to, char extra, char otherExtra) {
+		return AsciiKernels.skipRun(bytes, offset + from, offset + to, extra, otherExtra) - offset;
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || start > end || end > length) {
+			throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+		}
+		return new String(bytes, offset + start, end - start, StandardCharsets.ISO_8859_1);
+	}
+
+	@Override
+	public String toString() {
+		return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+	}
+
+}
@@ -0,0 +1,102 @@
+package uri.implementation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Word-at-a-time character class checks over ASCII bytes.
+ *
+ * Eight bytes are loaded into a long and classified together with carry-free
+ * byte-wise additions (SIMD within a register), so runs of "unreserved"
+ * characters, optionally together with two extra characters such as
+ * {@code '&'} and {@code '='} in a query, are skipped eight bytes per step.
+ * The first byte outside of that class, that is a delimiter such as
+ * {@code '/'}, {@code '?'} or {@code '@'}, a {@code '%'} or an invalid byte,
+ * is found with a trailing zero count. Shorter tails fall back to a scalar
+ * loop.
+ */
+final class AsciiKernels {
+
+	private static final VarHandle LONGS_IN_ARRAY = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle LONGS_IN_BUFFER = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
+	private AsciiKernels() {
+	}
+
+	/**
+	 * @param extra
+	 *            a character accepted in addition to "unreserved" ones, pass
+	 *            {@code '.'} if there is none
+	 * @param otherExtra
+	 *            another additional character
+	 * @return the index of the first byte in {@code bytes[from, to)} that is
+	 *         neither "unreserved" nor one of the extra characters, or
+	 *         {@code to}
+	 */
+	static int skipRun(byte[] bytes, int from, int to, char extra, char otherExtra) {
+		int i = from;
+		while (i + 8 <= to) {
+			long missing = ~accepted((long) LONGS_IN_ARRAY.get(bytes, i), extra, otherExtra) & HIGH_BITS;
+			if (missing != 0) {
+				return i + (Long.numberOfTrailingZeros(missing) >>> 3);
+			}
+			i += 8;
+		}
+		while (i < to && UriScanner.isRunChar((char) (bytes[i] & 0xff), extra, otherExtra)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Same as {@link #skipRun(byte[], int, int, char, char)} for absolute
+	 * indexes of a heap or direct buffer.
+	 */
+	static int skipRun(ByteBuffer buffer, int from, int to, char extra, char otherExtra) {
+		int i = from;
+		while (i + 8 <= to) {
+			long missing = ~accepted((long) LONGS_IN_BUFFER.get(buffer, i), extra, otherExtra) & HIGH_BITS;
+			if (missing != 0) {
+				return i + (Long.numberOfTrailingZeros(missing) >>> 3);
+			}
+			i += 8;
+		}
+		while (i < to && UriScanner.isRunChar((char) (buffer.get(i) & 0xff), extra, otherExtra)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @return a word with the high bit of every byte set where the byte of
+	 *         {@code word} is ALPHA, DIGIT, "." or one of the extra characters
+	 */
+	static long accepted(long word, char extra, char otherExtra) {
+		// bytes >= 0x80 would carry into their neighbours, mask them out first
+		long ascii = ~word & HIGH_BITS;
+		long low = word & ~HIGH_BITS;
+		long letters = inRange(low | 0x20 * ONES, 'a', 'z');
+		long digits = inRange(low, '0', '9');
+		long others = inRange(low, '.', '.') | inRange(low, extra, extra) | inRange(low, otherExtra, otherExtra);
+		return (letters | digits | others) & ascii;
+	}
+
+	/**
+	 * @param word
+	 *            eight bytes below 0x80
+	 * @return the high bit of every byte set where {@code lo <= byte <= hi}
+	 */
+	private static long inRange(long word, int lo, int hi) {
+		long atLeastLo = word + (0x80 - lo) * ONES;
+		long aboveHi = word + (0x7f - hi) * ONES;
+		return atLeastLo & ~aboveHi & HIGH_BITS;
+	}
+
+}
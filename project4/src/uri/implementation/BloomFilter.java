@@ -0,0 +1,136 @@
+package uri.implementation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A Bloom filter over 64 bit hashes. {@link #mightContain} has no false
+ * negatives, its false positive rate for the expected number of insertions is
+ * the one the filter was sized for.
+ *
+ * The bit positions of a hash are derived from its two halves by double
+ * hashing, so the hash must be uniformly distributed like those of
+ * {@link UriCanonicalizer}. Filters of equal size can be merged. Not
+ * thread-safe.
+ */
+public final class BloomFilter {
+
+	private final long[] words;
+	private final long bitCount;
+	private final int hashCount;
+
+	/**
+	 * @param expectedInsertions
+	 *            the number of distinct hashes the filter is sized for
+	 * @param falsePositiveRate
+	 *            the rate at {@code expectedInsertions}, between 0 and 1
+	 */
+	public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+		this(wordCount(expectedInsertions, falsePositiveRate), hashCount(falsePositiveRate));
+	}
+
+	private BloomFilter(int wordCount, int hashCount) {
+		this.words = new long[wordCount];
+		this.bitCount = 64L * wordCount;
+		this.hashCount = hashCount;
+	}
+
+	private static int wordCount(long expectedInsertions, double falsePositiveRate) {
+		if (expectedInsertions <= 0 || !(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+			throw new IllegalArgumentException(
+					"expected insertions " + expectedInsertions + ", false positive rate " + falsePositiveRate);
+		}
+		double bits = -expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+		long wordCount = (long) Math.ceil(bits / 64);
+		if (wordCount > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("a filter of " + (long) bits + " bits is too large");
+		}
+		return (int) Math.max(1, wordCount);
+	}
+
+	private static int hashCount(double falsePositiveRate) {
+		return (int) Math.max(1, Math.round(-Math.log(falsePositiveRate) / Math.log(2)));
+	}
+
+	/**
+	 * @return whether the hash was added before, or a false positive
+	 */
+	public boolean mightContain(long hash) {
+		long step = (hash >>> 32) | 1;
+		long combined = hash;
+		for (int i = 0; i < hashCount; i++) {
+			long bit = Long.remainderUnsigned(combined, bitCount);
+			if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+			combined += step;
+		}
+		return true;
+	}
+
+	/**
+	 * @return {@code false} if the hash was certainly not added before
+	 */
+	public boolean add(long hash) {
+		long step = (hash >>> 32) | 1;
+		long combined = hash;
+		boolean present = true;
+		for (int i = 0; i < hashCount; i++) {
+			long bit = Long.remainderUnsigned(combined, bitCount);
+			int word = (int) (bit >>> 6);
+			long mask = 1L << bit;
+			if ((words[word] & mask) == 0) {
+				words[word] |= mask;
+				present = false;
+			}
+			combined += step;
+		}
+		return present;
+	}
+
+	/**
+	 * Adds all hashes that were added to {@code other}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the filters were sized differently
+	 */
+	public void merge(BloomFilter other) {
+		if (other.bitCount != bitCount || other.hashCount != hashCount) {
+			throw new IllegalArgumentException("filters of different sizes");
+		}
+		for (int i = 0; i < words.length; i++) {
+			words[i] |= other.words[i];
+		}
+	}
+
+	public long getBitCount() {
+		return bitCount;
+	}
+
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(words.length);
+		out.writeByte(hashCount);
+		for (long word : words) {
+			out.writeLong(word);
+		}
+	}
+
+	public static BloomFilter readFrom(DataInput in) throws IOException {
+		int wordCount = in.readInt();
+		int hashCount = in.readByte();
+		if (wordCount <= 0 || hashCount <= 0) {
+			throw new IOException("invalid Bloom filter of " + wordCount + " words, " + hashCount + " hashes");
+		}
+		BloomFilter result = new BloomFilter(wordCount, hashCount);
+		for (int i = 0; i < wordCount; i++) {
+			result.words[i] = in.readLong();
+		}
+		return result;
+	}
+
+}
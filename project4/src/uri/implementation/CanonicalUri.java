@@ -0,0 +1,20 @@
+package uri.implementation;
+
+import uri.Uri;
+
+/**
+ * A {@link Uri} with a canonical form as built by {@link UriCanonicalizer}.
+ * Implementations are equal if their canonical forms are equal, the hash is
+ * compared first so that unequal URIs are usually rejected without comparing
+ * strings, and {@link Object#hashCode()} is derived from it.
+ */
+public interface CanonicalUri extends Uri {
+
+	public String getCanonicalForm();
+
+	/**
+	 * @return the 64 bit hash of {@link #getCanonicalForm()}
+	 */
+	public long getCanonicalHash();
+
+}
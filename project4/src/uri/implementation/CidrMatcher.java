@@ -0,0 +1,156 @@
+package uri.implementation;
+
+import java.util.Arrays;
+
+import uri.Host;
+import uri.IPv4Address;
+import uri.Uri;
+
+/**
+ * Longest prefix matching of IPv4 hosts against CIDR blocks.
+ *
+ * The blocks are stored in a binary trie over the address bits whose nodes
+ * live in parallel int arrays, so a lookup follows at most 32 array links and
+ * neither allocates nor boxes. Every block carries an int rule id chosen by
+ * the caller.
+ *
+ * Adding blocks is not thread-safe. Once all blocks are added and the matcher
+ * is safely published, any number of threads may call the match methods.
+ */
+public class CidrMatcher {
+
+	public static final int NO_MATCH = -1;
+
+	private int[] children = new int[64];
+	private int[] rules = new int[32];
+	private int nodeCount = 1;
+	private int blockCount;
+
+	public CidrMatcher() {
+		Arrays.fill(rules, NO_MATCH);
+	}
+
+	/**
+	 * Adds a block, replacing the rule of an equal block added before.
+	 *
+	 * @param network
+	 *            the network address, first octet in the highest byte, bits
+	 *            behind the prefix are ignored
+	 * @param prefixLength
+	 *            0 to 32
+	 * @param rule
+	 *            the non-negative id returned for hosts covered by this block
+	 */
+	public void add(int network, int prefixLength, int rule) {
+		if (prefixLength < 0 || prefixLength > 32) {
+			throw new IllegalArgumentException("prefix length " + prefixLength);
+		}
+		if (rule < 0) {
+			throw new IllegalArgumentException("rule must not be negative");
+		}
+		int node = 0;
+		for (int bit = 0; bit < prefixLength; bit++) {
+			int slot = 2 * node + ((network >>> (31 - bit)) & 1);
+			int child = children[slot];
+			if (child == 0) {
+				// newNode may replace the children array, so store afterwards
+				child = newNode();
+				children[slot] = child;
+			}
+			node = child;
+		}
+		if (rules[node] == NO_MATCH) {
+			blockCount++;
+		}
+		rules[node] = rule;
+	}
+
+	/**
+	 * @param cidr
+	 *            a block such as {@code "10.0.0.0/8"}, a plain address is a
+	 *            block with prefix length 32
+	 * @throws IllegalArgumentException
+	 *             if {@code cidr} is malformed
+	 */
+	public void add(String cidr, int rule) {
+		int slash = cidr.indexOf('/');
+		int end = slash < 0 ? cidr.length() : slash;
+		long network = UriScanner.parseIPv4Address(cidr, 0, end);
+		if (network < 0) {
+			throw new IllegalArgumentException("not a CIDR block: " + cidr);
+		}
+		int prefixLength = 32;
+		if (slash >= 0) {
+			// only one or two ASCII digits, unlike Integer.parseInt no sign
+			int digits = cidr.length() - slash - 1;
+			if (digits < 1 || digits > 2) {
+				throw new IllegalArgumentException("not a CIDR block: " + cidr);
+			}
+			prefixLength = 0;
+			for (int i = slash + 1; i < cidr.length(); i++) {
+				char c = cidr.charAt(i);
+				if (c < '0' || c > '9') {
+					throw new IllegalArgumentException("not a CIDR block: " + cidr);
+				}
+				prefixLength = 10 * prefixLength + c - '0';
+			}
+		}
+		add((int) network, prefixLength, rule);
+	}
+
+	/**
+	 * @param address
+	 *            the address, first octet in the highest byte
+	 * @return the rule of the longest block covering {@code address} or
+	 *         {@link #NO_MATCH}
+	 */
+	public int match(int address) {
+		int result = rules[0];
+		int node = 0;
+		for (int bit = 0; bit < 32; bit++) {
+			node = children[2 * node + ((address >>> (31 - bit)) & 1)];
+			if (node == 0) {
+				break;
+			}
+			if (rules[node] != NO_MATCH) {
+				result = rules[node];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the rule for the host or {@link #NO_MATCH} if no block covers it
+	 *         or it is not an {@link IPv4Address}
+	 */
+	public int match(Host host) {
+		if (host instanceof IPv4Address) {
+			return match(IPv4AddressImplementation.asInt((IPv4Address) host));
+		}
+		return NO_MATCH;
+	}
+
+	/**
+	 * @return the rule for the host of {@code uri}, see {@link #match(Host)}
+	 */
+	public int match(Uri uri) {
+		return match(uri.getHost());
+	}
+
+	/**
+	 * @return the number of distinct blocks added
+	 */
+	public int size() {
+		return blockCount;
+	}
+
+	private int newNode() {
+		if (nodeCount == rules.length) {
+			children = Arrays.copyOf(children, children.length * 2);
+			rules = Arrays.copyOf(rules, rules.length * 2);
+			Arrays.fill(rules, nodeCount, rules.length, NO_MATCH);
+		}
+		return nodeCount++;
+	}
+
+}
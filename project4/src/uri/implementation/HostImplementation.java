@@ -7,17 +7,56 @@ import java.util.regex.*;
 // TODO implement this class or another implementation of Host
 public class HostImplementation implements Host {
 
-	private String hostnotip;
+	public static final int NO_ID = -1;
+
+	private final String hostnotip;
+	private final int id;
 
 
 	public HostImplementation(String host) {
-		
-		// TODO implement this
-		this.hostnotip=host;
-		}
+		this(host, NO_ID);
+	}
+
+	/**
+	 * @param id
+	 *            the id of {@code host} in a {@link SymbolTable}
+	 */
+	public HostImplementation(String host, int id) {
+		this.hostnotip = host;
+		this.id = id;
+	}
+
+	/**
+	 * @return the {@link SymbolTable} id of this host or {@link #NO_ID} if it
+	 *         was not interned
+	 */
+	public int getId() {
+		return this.id;
+	}
+
 	@Override
 	public String toString() {
 		return this.hostnotip;
 	}
 
+	/**
+	 * Reg-names are compared ignoring the case of ASCII letters, the id is not
+	 * compared.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof HostImplementation
+				&& ((HostImplementation) other).hostnotip.equalsIgnoreCase(this.hostnotip);
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 0;
+		for (int i = 0; i < hostnotip.length(); i++) {
+			char c = hostnotip.charAt(i);
+			hash = 31 * hash + UriScanner.toLowerCase(c);
+		}
+		return hash;
+	}
+
 }
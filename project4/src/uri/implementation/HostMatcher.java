@@ -0,0 +1,99 @@
+package uri.implementation;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import uri.Host;
+import uri.Uri;
+
+/**
+ * Matches hosts against the current {@link HostTrie}, for example a block or
+ * allow list, while a new version of it can be built on another thread.
+ *
+ * The match methods read the current trie with a single volatile read and
+ * never lock, they always see either the complete old or the complete new
+ * trie. {@link #swap} and {@link #rebuild} replace it atomically, the old trie
+ * is garbage collected once no lookup uses it anymore.
+ *
+ * Every swap and rebuild gets a generation number when it is called. A trie
+ * is only published if no later generation was published before, so a slow
+ * rebuild of an older list never replaces a newer one.
+ */
+public class HostMatcher {
+
+	private volatile HostTrie current;
+	private final AtomicLong generations = new AtomicLong();
+	/** The generation of {@link #current}, guarded by {@code this}. */
+	private long published;
+
+	public HostMatcher() {
+		this(HostTrie.empty());
+	}
+
+	public HostMatcher(HostTrie trie) {
+		if (trie == null) {
+			throw new NullPointerException("trie");
+		}
+		this.current = trie;
+	}
+
+	public HostTrie get() {
+		return current;
+	}
+
+	/**
+	 * @return the replaced trie
+	 */
+	public HostTrie swap(HostTrie trie) {
+		if (trie == null) {
+			throw new NullPointerException("trie");
+		}
+		synchronized (this) {
+			HostTrie replaced = current;
+			publish(trie, generations.incrementAndGet());
+			return replaced;
+		}
+	}
+
+	/**
+	 * Fills a new {@link HostTrie.Builder} with {@code loader} and builds it on
+	 * {@code executor}, then swaps the result in. Lookups keep using the old
+	 * trie until then. If a {@link #swap} or rebuild called later was
+	 * published first, the new trie is dropped.
+	 *
+	 * @return the future of the new trie, completed after it was swapped in
+	 *         or dropped, {@link #get()} tells which
+	 */
+	public CompletableFuture<HostTrie> rebuild(Consumer<HostTrie.Builder> loader, Executor executor) {
+		long generation = generations.incrementAndGet();
+		return CompletableFuture.supplyAsync(() -> {
+			HostTrie.Builder builder = new HostTrie.Builder();
+			loader.accept(builder);
+			HostTrie trie = builder.build();
+			publish(trie, generation);
+			return trie;
+		}, executor);
+	}
+
+	public int match(CharSequence host) {
+		return current.match(host);
+	}
+
+	public int match(Host host) {
+		return current.match(host);
+	}
+
+	public int match(Uri uri) {
+		return current.match(uri);
+	}
+
+	private synchronized void publish(HostTrie trie, long generation) {
+		if (generation > published) {
+			published = generation;
+			current = trie;
+		}
+	}
+
+}
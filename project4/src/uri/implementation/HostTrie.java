@@ -0,0 +1,233 @@
+package uri.implementation;
+
+import java.util.Arrays;
+
+import uri.Host;
+import uri.IPv4Address;
+import uri.Uri;
+
+/**
+ * An immutable set of reg-name host patterns with an int value each, stored
+ * as a trie over the dot separated labels from right to left. There are three
+ * kinds of patterns:
+ * <ul>
+ * <li>an exact host such as {@code "example.com"},</li>
+ * <li>a suffix such as {@code ".example.com"}, matching {@code "example.com"}
+ * and every host below it,</li>
+ * <li>a wildcard such as {@code "*.example.com"}, matching every host below
+ * {@code "example.com"} but not {@code "example.com"} itself, like the host
+ * wildcards of {@link UriRouter}.</li>
+ * </ul>
+ * If several patterns match, an exact host wins, otherwise the pattern with
+ * the most labels, not counting {@code "*"}. A wildcard beats a suffix with
+ * the same labels. So {@code ".ads.example.com"} beats
+ * {@code "*.example.com"} for {@code "ads.example.com"} and every host below
+ * it. Labels are compared ignoring ASCII case.
+ *
+ * Nodes live in parallel int arrays and edges in {@link TrieEdges}, so
+ * millions of patterns need no object per entry. A lookup follows one edge
+ * per label of the host and neither allocates nor locks. Tries are created
+ * by a {@link Builder}, see {@link HostMatcher} for replacing a trie while it
+ * is in use.
+ */
+public final class HostTrie {
+
+	public static final int NO_MATCH = -1;
+
+	private static final int ROOT = 0;
+	private static final int NONE = TrieEdges.NONE;
+
+	private final int[] exactValues;
+	private final int[] suffixValues;
+	private final int[] wildcardValues;
+	private final int size;
+
+	private final TrieEdges edges;
+
+	private HostTrie(Builder builder) {
+		this.exactValues = Arrays.copyOf(builder.exactValues, builder.nodeCount);
+		this.suffixValues = Arrays.copyOf(builder.suffixValues, builder.nodeCount);
+		this.wildcardValues = Arrays.copyOf(builder.wildcardValues, builder.nodeCount);
+		this.size = builder.size;
+		this.edges = new TrieEdges(builder.edges);
+	}
+
+	/**
+	 * @return a trie without patterns
+	 */
+	public static HostTrie empty() {
+		return new Builder().build();
+	}
+
+	/**
+	 * @return the value of the best pattern matching {@code host[start, end)}
+	 *         or {@link #NO_MATCH}
+	 */
+	public int match(CharSequence host, int start, int end) {
+		int node = ROOT;
+		int result = suffixValues[ROOT];
+		int labelEnd = end;
+		while (true) {
+			// the patterns of deeper nodes replace the result
+			if (wildcardValues[node] != NO_MATCH) {
+				// at least one label is left
+				result = wildcardValues[node];
+			}
+			int dot = TrieEdges.lastIndexOf('.', host, start, labelEnd);
+			int labelStart = dot < 0 ? start : dot + 1;
+			node = edges.find(node, host, labelStart, labelEnd, true);
+			if (node == NONE) {
+				break;
+			}
+			if (suffixValues[node] != NO_MATCH) {
+				result = suffixValues[node];
+			}
+			if (dot < 0) {
+				if (exactValues[node] != NO_MATCH) {
+					return exactValues[node];
+				}
+				break;
+			}
+			labelEnd = dot;
+		}
+		return result;
+	}
+
+	public int match(CharSequence host) {
+		return match(host, 0, host.length());
+	}
+
+	/**
+	 * @return the value for a reg-name host, {@link #NO_MATCH} for an
+	 *         {@link IPv4Address}, which {@link CidrMatcher} handles
+	 */
+	public int match(Host host) {
+		if (host instanceof IPv4Address) {
+			return NO_MATCH;
+		}
+		return match(host.toString());
+	}
+
+	/**
+	 * Reads the host of URIs created by {@link UriScanner} based parsers
+	 * without allocating.
+	 */
+	public int match(Uri uri) {
+		if (uri instanceof OffsetUriImplementation) {
+			OffsetUriImplementation offsetUri = (OffsetUriImplementation) uri;
+			if (offsetUri.isIPv4Host()) {
+				return NO_MATCH;
+			}
+			return match(offsetUri.source(), offsetUri.bound(UriScanner.HOST_START),
+					offsetUri.bound(UriScanner.HOST_END));
+		}
+		return match(uri.getHost());
+	}
+
+	/**
+	 * @return the number of distinct patterns
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Collects patterns for a new {@link HostTrie}. A builder is not
+	 * thread-safe, it is meant to be filled by the thread that creates the
+	 * next trie. It can be built again after adding more patterns.
+	 */
+	public static final class Builder {
+
+		private int[] exactValues = new int[16];
+		private int[] suffixValues = new int[16];
+		private int[] wildcardValues = new int[16];
+		private int nodeCount;
+		private int size;
+
+		private final TrieEdges edges = new TrieEdges();
+
+		public Builder() {
+			newNode();
+		}
+
+		/**
+		 * Adds a pattern, replacing the value of an equal pattern added
+		 * before.
+		 *
+		 * @param pattern
+		 *            {@code "example.com"}, {@code ".example.com"} or
+		 *            {@code "*.example.com"} as described for {@link HostTrie}
+		 * @param value
+		 *            the non-negative value returned for matching hosts
+		 * @throws IllegalArgumentException
+		 *             if {@code pattern} is malformed
+		 * @return this builder
+		 */
+		public Builder add(String pattern, int value) {
+			if (value < 0) {
+				throw new IllegalArgumentException("value must not be negative");
+			}
+			boolean wildcard = pattern.startsWith("*.");
+			boolean suffix = pattern.startsWith(".");
+			int start = wildcard ? 2 : suffix ? 1 : 0;
+			if (pattern.indexOf('*', start) >= 0) {
+				throw new IllegalArgumentException("\"*\" is only allowed as first label: " + pattern);
+			}
+			if (start == pattern.length()) {
+				throw new IllegalArgumentException("empty host pattern: " + pattern);
+			}
+
+			int node = ROOT;
+			int labelEnd = pattern.length();
+			while (true) {
+				int dot = TrieEdges.lastIndexOf('.', pattern, start, labelEnd);
+				int labelStart = dot < 0 ? start : dot + 1;
+				node = child(node, pattern, labelStart, labelEnd);
+				if (dot < 0) {
+					break;
+				}
+				labelEnd = dot;
+			}
+
+			// select the array afterwards, child may have replaced it
+			int[] values = wildcard ? wildcardValues : suffix ? suffixValues : exactValues;
+			if (values[node] == NO_MATCH) {
+				size++;
+			}
+			values[node] = value;
+			return this;
+		}
+
+		/**
+		 * @return a trie of the patterns added so far
+		 */
+		public HostTrie build() {
+			return new HostTrie(this);
+		}
+
+		private int child(int parent, CharSequence input, int start, int end) {
+			int existing = edges.find(parent, input, start, end, true);
+			if (existing != NONE) {
+				return existing;
+			}
+			int child = newNode();
+			edges.add(parent, input, start, end, true, child);
+			return child;
+		}
+
+		private int newNode() {
+			if (nodeCount == exactValues.length) {
+				int length = exactValues.length * 2;
+				exactValues = Arrays.copyOf(exactValues, length);
+				suffixValues = Arrays.copyOf(suffixValues, length);
+				wildcardValues = Arrays.copyOf(wildcardValues, length);
+			}
+			exactValues[nodeCount] = NO_MATCH;
+			suffixValues[nodeCount] = NO_MATCH;
+			wildcardValues[nodeCount] = NO_MATCH;
+			return nodeCount++;
+		}
+
+	}
+
+}
@@ -2,37 +2,99 @@ package uri.implementation;
 
 import uri.IPv4Address;
 
-// TODO implement this class or another Implementation of IPv4Address
-public class IPv4AddressImplementation extends HostImplementation implements IPv4Address {
+/**
+ * An {@link IPv4Address} packed into a single int, first octet in the highest
+ * byte. The normalized text form is created on the first {@link #toString}
+ * call and cached.
+ */
+public class IPv4AddressImplementation implements IPv4Address {
 
-	private byte[] iparray=new byte [4];
-	private String[] iparraystring;
-	private String ipstring;
+	private final int address;
+	private String text;
 
+	public IPv4AddressImplementation(int address) {
+		this.address = address;
+	}
+
+	/**
+	 * @param host
+	 *            a host matching the non-terminal "IPv4address"
+	 * @throws IllegalArgumentException
+	 *             if {@code host} is not an "IPv4address"
+	 */
 	public IPv4AddressImplementation(String host) {
-		super(host);
-		this.ipstring=host;
-		iparraystring=(host.split("\\."));
-		int counter=0;
-		for (String ipInString:iparraystring){
-			int temp=Integer.parseInt(ipInString);
-			iparray[counter]=(byte) temp;
-			counter +=1;
+		long parsed = UriScanner.parseIPv4Address(host, 0, host.length());
+		if (parsed < 0) {
+			throw new IllegalArgumentException("not an IPv4 address: " + host);
+		}
+		this.address = (int) parsed;
+	}
 
+	/**
+	 * @return the address with the first octet in the highest byte
+	 */
+	public int asInt() {
+		return address;
+	}
+
+	/**
+	 * @return the address of any {@link IPv4Address} with the first octet in
+	 *         the highest byte
+	 */
+	public static int asInt(IPv4Address address) {
+		if (address instanceof IPv4AddressImplementation) {
+			return ((IPv4AddressImplementation) address).address;
+		}
+		byte[] octets = address.getOctets();
+		return (octets[0] & 0xff) << 24 | (octets[1] & 0xff) << 16 | (octets[2] & 0xff) << 8 | (octets[3] & 0xff);
+	}
 
+	/**
+	 * @return the address as an unsigned value
+	 */
+	public long asLong() {
+		return address & 0xffffffffL;
+	}
 
+	/**
+	 * @param index
+	 *            0 to 3, 0 is the leftmost octet
+	 * @return the octet as an unsigned value from 0 to 255
+	 */
+	public int getOctet(int index) {
+		if (index < 0 || index > 3) {
+			throw new IndexOutOfBoundsException("index " + index);
 		}
+		return (address >>> (24 - 8 * index)) & 0xff;
 	}
 
+	/**
+	 * @return a new array on every call
+	 */
 	@Override
 	public byte[] getOctets() {
-		
-		return iparray;
+		return new byte[] { (byte) (address >>> 24), (byte) (address >>> 16), (byte) (address >>> 8),
+				(byte) address };
 	}
 
 	@Override
 	public String toString() {
-		return this.ipstring;
+		String result = text;
+		if (result == null) {
+			result = getOctet(0) + "." + getOctet(1) + "." + getOctet(2) + "." + getOctet(3);
+			text = result;
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof IPv4AddressImplementation && ((IPv4AddressImplementation) other).address == address;
+	}
+
+	@Override
+	public int hashCode() {
+		return address;
 	}
 
 }
@@ -0,0 +1,107 @@
+package uri.implementation;
+
+import uri.Host;
+
+/**
+ * A {@link uri.Uri} whose scheme and "reg-name" host were interned into a
+ * {@link SymbolTable} during parsing. Only their ids are kept, the getters
+ * return the canonical instances from the table. The characters of userinfo,
+ * path and query are copied into one string without the delimiters, so the
+ * scheme and host are not stored per URI.
+ */
+public class InternedUriImplementation extends AbstractCanonicalUri {
+
+	private final SymbolTable symbols;
+	private final int schemeId;
+	/** The id of a "reg-name" host or the packed address of an IPv4 host. */
+	private final int hostValue;
+	private final boolean ipv4Host;
+	/** Userinfo, path and query without "@" and "?". */
+	private final String tail;
+	/** The end of the userinfo in {@link #tail}, -1 if there is none. */
+	private final int userinfoEnd;
+	/** The start of the query in {@link #tail}, -1 if there is none. */
+	private final int queryStart;
+	private Host host;
+
+	/**
+	 * @param input
+	 *            the parsed input, it is not kept
+	 * @param bounds
+	 *            the offsets filled in by {@link UriScanner#scan}
+	 * @param hostId
+	 *            the id of the host or {@link HostImplementation#NO_ID} for an
+	 *            IPv4 host, which is not interned
+	 */
+	public InternedUriImplementation(CharSequence input, int[] bounds, SymbolTable symbols, int schemeId,
+			int hostId) {
+		this.symbols = symbols;
+		this.schemeId = schemeId;
+		this.ipv4Host = bounds[UriScanner.HOST_TYPE] == UriScanner.IPV4_ADDRESS;
+		this.hostValue = ipv4Host ? bounds[UriScanner.HOST_ADDRESS] : hostId;
+
+		StringBuilder builder = new StringBuilder();
+		if (bounds[UriScanner.USERINFO_START] >= 0) {
+			builder.append(input, bounds[UriScanner.USERINFO_START], bounds[UriScanner.USERINFO_END]);
+			this.userinfoEnd = builder.length();
+		} else {
+			this.userinfoEnd = -1;
+		}
+		builder.append(input, bounds[UriScanner.PATH_START], bounds[UriScanner.PATH_END]);
+		if (bounds[UriScanner.QUERY_START] >= 0) {
+			this.queryStart = builder.length();
+			builder.append(input, bounds[UriScanner.QUERY_START], bounds[UriScanner.QUERY_END]);
+		} else {
+			this.queryStart = -1;
+		}
+		this.tail = builder.toString();
+	}
+
+	public int getSchemeId() {
+		return schemeId;
+	}
+
+	/**
+	 * @return the id of the host or {@link HostImplementation#NO_ID} for an
+	 *         IPv4 host
+	 */
+	public int getHostId() {
+		return ipv4Host ? HostImplementation.NO_ID : hostValue;
+	}
+
+	@Override
+	public String getScheme() {
+		return symbols.symbol(schemeId);
+	}
+
+	@Override
+	public String getUserInfo() {
+		return userinfoEnd < 0 ? null : tail.substring(0, userinfoEnd);
+	}
+
+	/**
+	 * Like {@link OffsetUriImplementation#getHost()} the immutable
+	 * {@link Host} is created on the first call and cached.
+	 */
+	@Override
+	public Host getHost() {
+		Host result = host;
+		if (result == null) {
+			result = ipv4Host ? new IPv4AddressImplementation(hostValue)
+					: new HostImplementation(symbols.symbol(hostValue), hostValue);
+			host = result;
+		}
+		return result;
+	}
+
+	@Override
+	public String getPath() {
+		return tail.substring(Math.max(userinfoEnd, 0), queryStart < 0 ? tail.length() : queryStart);
+	}
+
+	@Override
+	public String getQuery() {
+		return queryStart < 0 ? null : tail.substring(queryStart);
+	}
+
+}
@@ -0,0 +1,209 @@
+package uri.implementation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import uri.Uri;
+
+/**
+ * A file of pre-parsed URIs that is memory-mapped instead of being loaded
+ * onto the heap.
+ *
+ * {@link #write} parses the input once and stores every valid URI as a record
+ * of its length, its {@link UriScanner} bounds and its ASCII bytes, followed
+ * by an index of record offsets. {@link #open} maps the file, and {@link #get}
+ * returns an {@link OffsetUriImplementation} that reads the mapped bytes
+ * through an {@link AsciiBufferSequence}, so nothing is copied until a
+ * component string is requested.
+ *
+ * A single mapping is limited to 2 GB, so the file is mapped in segments of
+ * {@link #SEGMENT_SIZE} bytes. The writer pads so that no record crosses a
+ * segment boundary. It collects the index in a temporary file next to the
+ * store, so its heap use does not grow with the number of URIs either.
+ */
+public class OffHeapUriStore {
+
+	public static final int SEGMENT_SIZE = 1 << 30;
+
+	private static final int MAGIC = 0x55524953;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 24;
+	/** The length and the bounds in front of the text of every record. */
+	private static final int RECORD_HEADER_SIZE = 4 + 4 * UriScanner.BOUNDS_LENGTH;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final MappedByteBuffer[] segments;
+	private final long count;
+	private final long indexOffset;
+
+	private OffHeapUriStore(MappedByteBuffer[] segments, long count, long indexOffset) {
+		this.segments = segments;
+		this.count = count;
+		this.indexOffset = indexOffset;
+	}
+
+	/**
+	 * Parses {@code uris} and writes every valid one to {@code file}, which is
+	 * replaced if it exists.
+	 *
+	 * @return the number of stored URIs
+	 */
+	public static long write(Path file, Iterable<? extends CharSequence> uris) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		Path indexFile = Files.createTempFile(directory, file.getFileName().toString(), ".index");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+				FileChannel index = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			ByteBuffer indexBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+			int[] bounds = new int[UriScanner.BOUNDS_LENGTH];
+			long count = 0;
+			long position = HEADER_SIZE;
+			buffer.position(HEADER_SIZE);
+
+			for (CharSequence uri : uris) {
+				if (uri == null || !UriScanner.scan(uri, bounds)) {
+					continue;
+				}
+				int length = uri.length();
+				int recordSize = RECORD_HEADER_SIZE + length;
+				if (recordSize > SEGMENT_SIZE) {
+					throw new IOException("URI of " + length + " characters is too long to be stored");
+				}
+				long room = SEGMENT_SIZE - (position % SEGMENT_SIZE);
+				if (recordSize > room) {
+					position += pad(channel, buffer, room);
+				}
+
+				ensureRoom(index, indexBuffer, 8);
+				indexBuffer.putLong(position);
+				count++;
+
+				ensureRoom(channel, buffer, Math.min(recordSize, BUFFER_SIZE));
+				buffer.putInt(length);
+				for (int bound : bounds) {
+					buffer.putInt(bound);
+				}
+				putAscii(channel, buffer, uri, length);
+				position += recordSize;
+			}
+
+			// the index is aligned to 8 bytes, so no entry crosses a segment
+			position += pad(channel, buffer, (8 - position % 8) % 8);
+			long indexOffset = position;
+			flush(channel, buffer);
+			flush(index, indexBuffer);
+			long indexSize = index.size();
+			for (long copied = 0; copied < indexSize;) {
+				copied += index.transferTo(copied, indexSize - copied, channel);
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(indexOffset).flip();
+			channel.write(header, 0);
+			return count;
+		} finally {
+			Files.deleteIfExists(indexFile);
+		}
+	}
+
+	/**
+	 * Maps a file created by {@link #write}.
+	 */
+	public static OffHeapUriStore open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+			for (int i = 0; i < segments.length; i++) {
+				long start = (long) i * SEGMENT_SIZE;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+			}
+			if (size < HEADER_SIZE || segments[0].getInt(0) != MAGIC) {
+				throw new IOException("not a URI store: " + file);
+			}
+			if (segments[0].getInt(4) != VERSION) {
+				throw new IOException("unsupported URI store version " + segments[0].getInt(4));
+			}
+			return new OffHeapUriStore(segments, segments[0].getLong(8), segments[0].getLong(16));
+		}
+	}
+
+	public long size() {
+		return count;
+	}
+
+	/**
+	 * @return a view of the stored URI, its text stays in the mapped file
+	 */
+	public Uri get(long index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("index " + index + ", size " + count);
+		}
+		long entry = indexOffset + 8 * index;
+		long offset = segments[(int) (entry / SEGMENT_SIZE)].getLong((int) (entry % SEGMENT_SIZE));
+		MappedByteBuffer segment = segments[(int) (offset / SEGMENT_SIZE)];
+		int record = (int) (offset % SEGMENT_SIZE);
+
+		int length = segment.getInt(record);
+		int[] bounds = new int[UriScanner.BOUNDS_LENGTH];
+		for (int i = 0; i < bounds.length; i++) {
+			bounds[i] = segment.getInt(record + 4 + 4 * i);
+		}
+		int text = record + RECORD_HEADER_SIZE;
+		return new OffsetUriImplementation(new AsciiBufferSequence(segment, text, length), bounds);
+	}
+
+	/**
+	 * Copies the characters of {@code uri}, which the scanner has checked to
+	 * be ASCII, into the backing array of {@code buffer} in pieces as large as
+	 * the buffer allows.
+	 */
+	private static void putAscii(FileChannel channel, ByteBuffer buffer, CharSequence uri, int length)
+			throws IOException {
+		byte[] array = buffer.array();
+		int i = 0;
+		while (i < length) {
+			ensureRoom(channel, buffer, 1);
+			int end = i + Math.min(length - i, buffer.remaining());
+			int position = buffer.position();
+			for (; i < end; i++) {
+				array[position++] = (byte) uri.charAt(i);
+			}
+			buffer.position(position);
+		}
+	}
+
+	private static long pad(FileChannel channel, ByteBuffer buffer, long count) throws IOException {
+		long left = count;
+		while (left > 0) {
+			ensureRoom(channel, buffer, 1);
+			int bytes = (int) Math.min(left, buffer.remaining());
+			int position = buffer.position();
+			Arrays.fill(buffer.array(), position, position + bytes, (byte) 0);
+			buffer.position(position + bytes);
+			left -= bytes;
+		}
+		return count;
+	}
+
+	private static void ensureRoom(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+		if (buffer.remaining() < bytes) {
+			flush(channel, buffer);
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+}
@@ -0,0 +1,140 @@
+package uri.implementation;
+
+import uri.Host;
+import uri.Uri;
+
+/**
+ * A {@link Uri} that keeps only the original input and the component offsets
+ * found by {@link UriScanner}. Component strings are created on demand by the
+ * getters instead of being copied during parsing.
+ *
+ * The source must not be modified after parsing, otherwise the offsets no
+ * longer describe it.
+ */
+public class OffsetUriImplementation extends AbstractCanonicalUri {
+
+	private final CharSequence source;
+	private final int[] bounds;
+	private Host host;
+	private QueryParameters queryParameters;
+	private PathSegments pathSegments;
+
+	/**
+	 * @param source
+	 *            the parsed input
+	 * @param bounds
+	 *            the offsets filled in by {@link UriScanner#scan}, the array is
+	 *            not copied
+	 */
+	public OffsetUriImplementation(CharSequence source, int[] bounds) {
+		this.source = source;
+		this.bounds = bounds;
+	}
+
+	@Override
+	public String getScheme() {
+		return component(UriScanner.SCHEME_START, UriScanner.SCHEME_END);
+	}
+
+	@Override
+	public String getQuery() {
+		return component(UriScanner.QUERY_START, UriScanner.QUERY_END);
+	}
+
+	/**
+	 * The query is split on the first call, like {@link #getHost()} the
+	 * immutable result is cached.
+	 *
+	 * @return the parameters of the query, empty if there is no query
+	 */
+	public QueryParameters getQueryParameters() {
+		QueryParameters result = queryParameters;
+		if (result == null) {
+			int start = bounds[UriScanner.QUERY_START];
+			result = start < 0 ? QueryParameters.EMPTY
+					: new QueryParameters(source, start, bounds[UriScanner.QUERY_END]);
+			queryParameters = result;
+		}
+		return result;
+	}
+
+	@Override
+	public String getUserInfo() {
+		return component(UriScanner.USERINFO_START, UriScanner.USERINFO_END);
+	}
+
+	/**
+	 * The host was already classified and decoded by the scanner. The
+	 * {@link Host} is created on the first call and the same instance is
+	 * returned afterwards. It is immutable, so a racy first call at worst
+	 * creates an equal instance twice.
+	 */
+	@Override
+	public Host getHost() {
+		Host result = host;
+		if (result == null) {
+			result = createHost();
+			host = result;
+		}
+		return result;
+	}
+
+	protected Host createHost() {
+		if (isIPv4Host()) {
+			return new IPv4AddressImplementation(bounds[UriScanner.HOST_ADDRESS]);
+		}
+		return new HostImplementation(component(UriScanner.HOST_START, UriScanner.HOST_END));
+	}
+
+	protected boolean isIPv4Host() {
+		return bounds[UriScanner.HOST_TYPE] == UriScanner.IPV4_ADDRESS;
+	}
+
+	@Override
+	public String getPath() {
+		return component(UriScanner.PATH_START, UriScanner.PATH_END);
+	}
+
+	/**
+	 * Like {@link #getQueryParameters()} the segments are split on the first
+	 * call and cached.
+	 */
+	public PathSegments getPathSegments() {
+		PathSegments result = pathSegments;
+		if (result == null) {
+			int start = bounds[UriScanner.PATH_START];
+			int end = bounds[UriScanner.PATH_END];
+			result = start == end ? PathSegments.EMPTY : new PathSegments(source, start, end);
+			pathSegments = result;
+		}
+		return result;
+	}
+
+	@Override
+	String canonicalize(UriCanonicalizer canonicalizer) {
+		return canonicalizer.canonicalize(source, bounds);
+	}
+
+	CharSequence source() {
+		return source;
+	}
+
+	int bound(int index) {
+		return bounds[index];
+	}
+
+	/**
+	 * @return the bounds array itself, it must not be modified
+	 */
+	int[] bounds() {
+		return bounds;
+	}
+
+	private String component(int start, int end) {
+		if (bounds[start] < 0) {
+			return null;
+		}
+		return source.subSequence(bounds[start], bounds[end]).toString();
+	}
+
+}
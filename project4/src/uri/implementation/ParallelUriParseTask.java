@@ -0,0 +1,57 @@
+package uri.implementation;
+
+import java.util.concurrent.RecursiveAction;
+
+import uri.Uri;
+
+/**
+ * Parses a range of an input array on a {@link java.util.concurrent.ForkJoinPool}.
+ *
+ * Ranges larger than {@link #THRESHOLD} are split in halves. Each leaf uses its
+ * own {@link UriStateMachineParser}, so no parser state is shared between
+ * workers. Results are written to the slot with the same index as the input,
+ * which keeps the input order.
+ */
+public class ParallelUriParseTask extends RecursiveAction {
+
+	public static final int THRESHOLD = 4096;
+
+	private static final long serialVersionUID = 1L;
+
+	private final String[] uris;
+	private final Uri[] result;
+	private final int start;
+	private final int end;
+
+	/**
+	 * @param uris
+	 *            the inputs, elements may be {@code null}
+	 * @param result
+	 *            receives the parsed {@link Uri} for every index in
+	 *            {@code [start, end)}
+	 */
+	public ParallelUriParseTask(String[] uris, Uri[] result, int start, int end) {
+		this.uris = uris;
+		this.result = result;
+		this.start = start;
+		this.end = end;
+	}
+
+	@Override
+	protected void compute() {
+		if (end - start <= THRESHOLD) {
+			UriStateMachineParser parser = new UriStateMachineParser();
+			for (int i = start; i < end; i++) {
+				if (uris[i] != null) {
+					parser.setParser(uris[i]);
+					result[i] = parser.parse();
+				}
+			}
+		} else {
+			int middle = (start + end) >>> 1;
+			invokeAll(new ParallelUriParseTask(uris, result, start, middle),
+					new ParallelUriParseTask(uris, result, middle, end));
+		}
+	}
+
+}
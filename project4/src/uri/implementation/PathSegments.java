@@ -0,0 +1,199 @@
+package uri.implementation;
+
+import uri.Uri;
+
+/**
+ * The segments of a path, that is the parts behind every {@code "/"}.
+ *
+ * Like {@link QueryParameters} only the offsets of every segment are stored,
+ * segments are accessed by index and compared without allocating. The path
+ * {@code "/a/b/"} has the three segments {@code "a"}, {@code "b"} and
+ * {@code ""}, the empty path has none.
+ */
+public final class PathSegments {
+
+	static final PathSegments EMPTY = new PathSegments("", new int[0], 0);
+
+	private final CharSequence source;
+
+	/** Start and end offset in {@link #source} per segment. */
+	private final int[] offsets;
+	private final int size;
+
+	/**
+	 * Splits the path {@code source[start, end)}, which must be empty or
+	 * begin with "/". The source is not copied and must not be modified
+	 * afterwards.
+	 */
+	public PathSegments(CharSequence source, int start, int end) {
+		this.source = source;
+
+		int size = 0;
+		for (int i = start; i < end; i++) {
+			if (source.charAt(i) == '/') {
+				size++;
+			}
+		}
+		int[] offsets = new int[2 * size];
+		int segment = 0;
+		for (int i = start; i < end; i++) {
+			if (source.charAt(i) == '/') {
+				if (segment > 0) {
+					offsets[2 * segment - 1] = i;
+				}
+				offsets[2 * segment] = i + 1;
+				segment++;
+			}
+		}
+		if (size > 0) {
+			offsets[2 * size - 1] = end;
+		}
+		this.offsets = offsets;
+		this.size = size;
+	}
+
+	private PathSegments(CharSequence source, int[] offsets, int size) {
+		this.source = source;
+		this.offsets = offsets;
+		this.size = size;
+	}
+
+	/**
+	 * @return the segments of the path of {@code uri}, without copying the
+	 *         path if {@code uri} was created by this package's scanner
+	 */
+	public static PathSegments of(Uri uri) {
+		if (uri instanceof OffsetUriImplementation) {
+			return ((OffsetUriImplementation) uri).getPathSegments();
+		}
+		String path = uri.getPath();
+		return path.isEmpty() ? EMPTY : new PathSegments(path, 0, path.length());
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the text that {@link #start} and {@link #end} refer to
+	 */
+	public CharSequence getSource() {
+		return source;
+	}
+
+	public int start(int index) {
+		return offsets[2 * checkIndex(index)];
+	}
+
+	public int end(int index) {
+		return offsets[2 * checkIndex(index) + 1];
+	}
+
+	public boolean segmentEquals(int index, CharSequence segment) {
+		int start = start(index);
+		int end = end(index);
+		if (end - start != segment.length()) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if (source.charAt(i) != segment.charAt(i - start)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return whether the first segments are equal to {@code segments}
+	 */
+	public boolean startsWith(CharSequence... segments) {
+		if (segments.length > size) {
+			return false;
+		}
+		for (int i = 0; i < segments.length; i++) {
+			if (!segmentEquals(i, segments[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public String getSegment(int index) {
+		return source.subSequence(start(index), end(index)).toString();
+	}
+
+	/**
+	 * Removes "." and ".." segments as described by the "remove_dot_segments"
+	 * algorithm of RFC 3986, section 5.2.4. A ".." removes the segment before
+	 * it, at the root it is dropped. A trailing "." or ".." leaves an empty
+	 * last segment, so {@code "/a/b/.."} becomes {@code "/a/"}.
+	 *
+	 * The segments are compacted in a copy of the offset array, no text is
+	 * copied. Only literal dots are recognized, percent-encoded dots have to
+	 * be decoded first.
+	 *
+	 * @return the normalized segments, {@code this} if there are no dot
+	 *         segments
+	 */
+	public PathSegments removeDotSegments() {
+		int first = 0;
+		while (first < size && !isDotSegment(first)) {
+			first++;
+		}
+		if (first == size) {
+			return this;
+		}
+
+		int[] result = offsets.clone();
+		int count = first;
+		for (int i = first; i < size; i++) {
+			int start = offsets[2 * i];
+			int length = offsets[2 * i + 1] - start;
+			boolean dot = length == 1 && source.charAt(start) == '.';
+			boolean dotDot = length == 2 && source.charAt(start) == '.' && source.charAt(start + 1) == '.';
+			if (dotDot && count > 0) {
+				count--;
+			}
+			if (dot || dotDot) {
+				if (i == size - 1) {
+					// keep the trailing "/" as an empty segment
+					result[2 * count] = offsets[2 * i + 1];
+					result[2 * count + 1] = offsets[2 * i + 1];
+					count++;
+				}
+			} else {
+				result[2 * count] = start;
+				result[2 * count + 1] = start + length;
+				count++;
+			}
+		}
+		return new PathSegments(source, result, count);
+	}
+
+	/**
+	 * @return the path made of these segments, each preceded by "/"
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			builder.append('/').append(source, offsets[2 * i], offsets[2 * i + 1]);
+		}
+		return builder.toString();
+	}
+
+	private boolean isDotSegment(int index) {
+		int start = offsets[2 * index];
+		int length = offsets[2 * index + 1] - start;
+		return (length == 1 || length == 2) && source.charAt(start) == '.'
+				&& (length == 1 || source.charAt(start + 1) == '.');
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+		}
+		return index;
+	}
+
+}
@@ -0,0 +1,184 @@
+package uri.implementation;
+
+import uri.Uri;
+
+/**
+ * The parameters of a query, that is its {@code "&"} separated parts, each
+ * split into a key and a value at the first {@code "="}.
+ *
+ * The query is split once when the view is created and only the offsets of
+ * every parameter are stored. Parameters are accessed by index, so iterating
+ * over them, comparing keys and looking up a key with {@link #indexOf} do not
+ * allocate:
+ *
+ * <pre>
+ * QueryParameters parameters = QueryParameters.of(uri);
+ * for (int i = 0; i &lt; parameters.size(); i++) {
+ * 	if (parameters.keyEquals(i, "id")) {
+ * 		...
+ * 	}
+ * }
+ * </pre>
+ *
+ * Keys and values are kept in their encoded form, percent-encoded characters
+ * are not decoded. Empty parts such as the middle of {@code "a=1&&b=2"} are
+ * skipped. A parameter without {@code "="} has an empty value.
+ */
+public final class QueryParameters {
+
+	static final QueryParameters EMPTY = new QueryParameters("", 0, 0);
+
+	private final CharSequence source;
+
+	/**
+	 * Three offsets in {@link #source} per parameter: key start, key end and
+	 * value end. The value starts behind the "=" at key end if there is one.
+	 */
+	private final int[] offsets;
+	private final int size;
+
+	/**
+	 * Splits the query {@code source[start, end)}, the source is not copied
+	 * and must not be modified afterwards.
+	 */
+	public QueryParameters(CharSequence source, int start, int end) {
+		this.source = source;
+
+		int parts = 1;
+		for (int i = start; i < end; i++) {
+			if (source.charAt(i) == '&') {
+				parts++;
+			}
+		}
+		int[] offsets = new int[3 * parts];
+		int size = 0;
+		int partStart = start;
+		while (partStart < end) {
+			int separator = -1;
+			int i = partStart;
+			for (; i < end; i++) {
+				char c = source.charAt(i);
+				if (c == '&') {
+					break;
+				}
+				if (c == '=' && separator < 0) {
+					separator = i;
+				}
+			}
+			if (i > partStart) {
+				offsets[3 * size] = partStart;
+				offsets[3 * size + 1] = separator >= 0 ? separator : i;
+				offsets[3 * size + 2] = i;
+				size++;
+			}
+			partStart = i + 1;
+		}
+		this.offsets = offsets;
+		this.size = size;
+	}
+
+	/**
+	 * @return the parameters of the query of {@code uri}, without copying the
+	 *         query if {@code uri} was created by this package's scanner
+	 */
+	public static QueryParameters of(Uri uri) {
+		if (uri instanceof OffsetUriImplementation) {
+			return ((OffsetUriImplementation) uri).getQueryParameters();
+		}
+		String query = uri.getQuery();
+		return query == null ? EMPTY : new QueryParameters(query, 0, query.length());
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the text that {@link #keyStart} and the other offsets refer to
+	 */
+	public CharSequence getSource() {
+		return source;
+	}
+
+	public int keyStart(int index) {
+		return offsets[3 * checkIndex(index)];
+	}
+
+	public int keyEnd(int index) {
+		return offsets[3 * checkIndex(index) + 1];
+	}
+
+	public int valueStart(int index) {
+		int keyEnd = keyEnd(index);
+		return keyEnd < valueEnd(index) ? keyEnd + 1 : keyEnd;
+	}
+
+	public int valueEnd(int index) {
+		return offsets[3 * checkIndex(index) + 2];
+	}
+
+	/**
+	 * @return whether the parameter at {@code index} contains an "=", which
+	 *         distinguishes {@code "a="} from {@code "a"}
+	 */
+	public boolean hasValue(int index) {
+		return keyEnd(index) < valueEnd(index);
+	}
+
+	public boolean keyEquals(int index, CharSequence key) {
+		return regionEquals(keyStart(index), keyEnd(index), key);
+	}
+
+	public boolean valueEquals(int index, CharSequence value) {
+		return regionEquals(valueStart(index), valueEnd(index), value);
+	}
+
+	/**
+	 * @return the index of the first parameter with the given key or -1
+	 */
+	public int indexOf(CharSequence key) {
+		for (int i = 0; i < size; i++) {
+			if (regionEquals(offsets[3 * i], offsets[3 * i + 1], key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public String getKey(int index) {
+		return source.subSequence(keyStart(index), keyEnd(index)).toString();
+	}
+
+	public String getValue(int index) {
+		return source.subSequence(valueStart(index), valueEnd(index)).toString();
+	}
+
+	/**
+	 * @return the value of the first parameter with the given key or
+	 *         {@code null} if there is none
+	 */
+	public String getValue(CharSequence key) {
+		int index = indexOf(key);
+		return index < 0 ? null : getValue(index);
+	}
+
+	private boolean regionEquals(int start, int end, CharSequence text) {
+		if (end - start != text.length()) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if (source.charAt(i) != text.charAt(i - start)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+		}
+		return index;
+	}
+
+}
@@ -0,0 +1,106 @@
+package uri.implementation;
+
+import java.nio.ByteBuffer;
+
+import uri.Uri;
+
+/**
+ * A parser without per-parse instance state. All state of a call lives on the
+ * stack or in objects handed to the returned {@link Uri}, so a single
+ * {@link #INSTANCE} can be shared by any number of threads without locking.
+ *
+ * A parser created with a {@link SymbolTable} interns the scheme and every
+ * "reg-name" host while parsing and returns {@link InternedUriImplementation}
+ * instances, which keep their ids instead of the characters.
+ */
+public final class StatelessUriParser {
+
+	public static final StatelessUriParser INSTANCE = new StatelessUriParser(null);
+
+	private final SymbolTable symbols;
+
+	/**
+	 * @param symbols
+	 *            the table to intern schemes and hosts into, or {@code null}
+	 *            to not intern anything
+	 */
+	public StatelessUriParser(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+
+	/**
+	 * @param uri
+	 *            the characters to parse, a non-{@link String} input is copied
+	 *            once it is known to be valid, so reusing a mutable buffer
+	 *            afterwards does not change the result
+	 * @return the parsed {@link Uri} or {@code null} if {@code uri} is not valid
+	 */
+	public Uri parse(CharSequence uri) {
+		int[] bounds = new int[UriScanner.BOUNDS_LENGTH];
+		if (!UriScanner.scan(uri, bounds)) {
+			return null;
+		}
+		if (symbols != null) {
+			return intern(uri, bounds);
+		}
+		return new OffsetUriImplementation(uri instanceof String ? uri : uri.toString(), bounds);
+	}
+
+	/**
+	 * Parses ASCII bytes without decoding them into a String first. Any byte
+	 * outside of ASCII rejects the input where it is found. Once the input is
+	 * known to be valid, the region is copied, so the array can be reused
+	 * afterwards.
+	 *
+	 * @return the parsed {@link Uri} or {@code null} if the bytes are not a
+	 *         valid URI
+	 */
+	public Uri parse(byte[] buf, int off, int len) {
+		AsciiCharSequence view = new AsciiCharSequence(buf, off, len);
+		int[] bounds = new int[UriScanner.BOUNDS_LENGTH];
+		if (!UriScanner.scan(view, bounds)) {
+			return null;
+		}
+		if (symbols != null) {
+			return intern(view, bounds);
+		}
+		byte[] copy = new byte[len];
+		System.arraycopy(buf, off, copy, 0, len);
+		return new OffsetUriImplementation(new AsciiCharSequence(copy, 0, len), bounds);
+	}
+
+	/**
+	 * Same as {@link #parse(byte[], int, int)} for the bytes between the
+	 * position and the limit of {@code buf}, which may be a direct buffer. The
+	 * position of {@code buf} is not changed.
+	 */
+	public Uri parse(ByteBuffer buf) {
+		int off = buf.position();
+		int len = buf.remaining();
+		AsciiBufferSequence view = new AsciiBufferSequence(buf, off, len);
+		int[] bounds = new int[UriScanner.BOUNDS_LENGTH];
+		if (!UriScanner.scan(view, bounds)) {
+			return null;
+		}
+		if (symbols != null) {
+			return intern(view, bounds);
+		}
+		byte[] copy = new byte[len];
+		buf.get(off, copy);
+		return new OffsetUriImplementation(new AsciiCharSequence(copy, 0, len), bounds);
+	}
+
+	/**
+	 * @param scanned
+	 *            the input the bounds were recorded on, it is not kept
+	 */
+	private Uri intern(CharSequence scanned, int[] bounds) {
+		int schemeId = symbols.intern(scanned, bounds[UriScanner.SCHEME_START], bounds[UriScanner.SCHEME_END]);
+		int hostId = HostImplementation.NO_ID;
+		if (bounds[UriScanner.HOST_TYPE] == UriScanner.REG_NAME) {
+			hostId = symbols.intern(scanned, bounds[UriScanner.HOST_START], bounds[UriScanner.HOST_END]);
+		}
+		return new InternedUriImplementation(scanned, bounds, symbols, schemeId, hostId);
+	}
+
+}
@@ -0,0 +1,152 @@
+package uri.implementation;
+
+import java.util.Arrays;
+
+/**
+ * A concurrent table that maps strings to canonical instances and dense int
+ * ids, starting at 0.
+ *
+ * Lookups hash a region of a {@link CharSequence} directly, so a symbol that
+ * is already known is found without creating a String. Readers never lock:
+ * the table is an open addressing array of immutable entries that is only
+ * replaced, never resized in place. Inserts are serialized and re-check the
+ * table under the lock. The table never shrinks.
+ */
+public class SymbolTable {
+
+	private static final class Entry {
+
+		final String symbol;
+		final int hash;
+		final int id;
+
+		Entry(String symbol, int hash, int id) {
+			this.symbol = symbol;
+			this.hash = hash;
+			this.id = id;
+		}
+
+	}
+
+	private volatile Entry[] table = new Entry[64];
+	private volatile String[] symbols = new String[32];
+	private int size;
+
+	/**
+	 * @return the id of {@code input[start, end)}, which is added if it is not
+	 *         yet in the table
+	 */
+	public int intern(CharSequence input, int start, int end) {
+		int hash = hash(input, start, end);
+		Entry entry = find(table, input, start, end, hash);
+		if (entry != null) {
+			return entry.id;
+		}
+		synchronized (this) {
+			Entry[] current = table;
+			entry = find(current, input, start, end, hash);
+			if (entry != null) {
+				return entry.id;
+			}
+			return add(current, input.subSequence(start, end).toString(), hash);
+		}
+	}
+
+	/**
+	 * @return the id of {@code symbol}, which is added if it is not yet in the
+	 *         table
+	 */
+	public int intern(CharSequence symbol) {
+		return intern(symbol, 0, symbol.length());
+	}
+
+	/**
+	 * @return the canonical instance for {@code id}
+	 * @throws IndexOutOfBoundsException
+	 *             if no symbol has this id
+	 */
+	public String symbol(int id) {
+		String result = id >= 0 && id < symbols.length ? symbols[id] : null;
+		if (result == null) {
+			synchronized (this) {
+				if (id < 0 || id >= size) {
+					throw new IndexOutOfBoundsException("id " + id);
+				}
+				result = symbols[id];
+			}
+		}
+		return result;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	private int add(Entry[] current, String symbol, int hash) {
+		int id = size;
+		if (id == symbols.length) {
+			symbols = Arrays.copyOf(symbols, id * 2);
+		}
+		symbols[id] = symbol;
+
+		Entry entry = new Entry(symbol, hash, id);
+		if (2 * (size + 1) > current.length) {
+			Entry[] grown = new Entry[current.length * 2];
+			for (Entry old : current) {
+				if (old != null) {
+					insert(grown, old);
+				}
+			}
+			insert(grown, entry);
+			table = grown;
+		} else {
+			insert(current, entry);
+		}
+		size++;
+		return id;
+	}
+
+	private static void insert(Entry[] target, Entry entry) {
+		int mask = target.length - 1;
+		int slot = entry.hash & mask;
+		while (target[slot] != null) {
+			slot = (slot + 1) & mask;
+		}
+		target[slot] = entry;
+	}
+
+	private static Entry find(Entry[] current, CharSequence input, int start, int end, int hash) {
+		int mask = current.length - 1;
+		int slot = hash & mask;
+		Entry entry;
+		while ((entry = current[slot]) != null) {
+			if (entry.hash == hash && regionEquals(entry.symbol, input, start, end)) {
+				return entry;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	private static boolean regionEquals(String symbol, CharSequence input, int start, int end) {
+		if (symbol.length() != end - start) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if (symbol.charAt(i - start) != input.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(CharSequence input, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + input.charAt(i);
+		}
+		// spread the bits, the table only uses the low ones
+		return hash ^ (hash >>> 16);
+	}
+
+}
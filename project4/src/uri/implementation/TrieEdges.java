@@ -0,0 +1,186 @@
+package uri.implementation;
+
+import java.util.Arrays;
+
+/**
+ * The edges of a trie whose nodes are numbered ints, as used by
+ * {@link UriRouter} and {@link HostTrie}.
+ *
+ * Edges live in an open-addressing table keyed by parent node and token hash.
+ * The tokens of all edges share one byte array, each preceded by its length
+ * in two bytes, so a trie with millions of edges needs no object per edge and
+ * a lookup neither allocates nor boxes. Tokens are limited to Latin-1
+ * characters, which covers everything a valid URI can contain. Tokens added
+ * with {@code ignoreCase} are stored lower-cased and must be looked up the
+ * same way.
+ */
+final class TrieEdges {
+
+	static final int NONE = -1;
+
+	private static final int MAX_TOKEN_LENGTH = 0xffff;
+
+	private int[] parents;
+	private int[] hashes;
+	/** Per edge: the offset of the token length in {@link #tokens}. */
+	private int[] offsets;
+	private int[] children;
+	private int count;
+	private byte[] tokens;
+	private int tokensLength;
+
+	TrieEdges() {
+		parents = new int[32];
+		hashes = new int[32];
+		offsets = new int[32];
+		children = new int[32];
+		tokens = new byte[256];
+		Arrays.fill(parents, NONE);
+	}
+
+	/**
+	 * Creates a copy, trimmed to the tokens added so far.
+	 */
+	TrieEdges(TrieEdges other) {
+		parents = other.parents.clone();
+		hashes = other.hashes.clone();
+		offsets = other.offsets.clone();
+		children = other.children.clone();
+		count = other.count;
+		tokens = Arrays.copyOf(other.tokens, other.tokensLength);
+		tokensLength = other.tokensLength;
+	}
+
+	/**
+	 * @return the child of {@code parent} for the token
+	 *         {@code input[start, end)} or {@link #NONE}
+	 */
+	int find(int parent, CharSequence input, int start, int end, boolean ignoreCase) {
+		int hash = hash(input, start, end, ignoreCase);
+		int mask = parents.length - 1;
+		for (int slot = slot(parent, hash, mask);; slot = (slot + 1) & mask) {
+			int edgeParent = parents[slot];
+			if (edgeParent == NONE) {
+				return NONE;
+			}
+			if (edgeParent == parent && hashes[slot] == hash
+					&& tokenEquals(offsets[slot], input, start, end, ignoreCase)) {
+				return children[slot];
+			}
+		}
+	}
+
+	/**
+	 * Adds an edge, the token must not have been added for {@code parent}
+	 * before.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the token is too long or not Latin-1
+	 */
+	void add(int parent, CharSequence input, int start, int end, boolean ignoreCase, int child) {
+		int offset = addToken(input, start, end, ignoreCase);
+		if (2 * (count + 1) > parents.length) {
+			grow();
+		}
+		insert(parent, hash(input, start, end, ignoreCase), offset, child);
+	}
+
+	/**
+	 * @return the offset of the stored length
+	 */
+	private int addToken(CharSequence input, int start, int end, boolean ignoreCase) {
+		int length = end - start;
+		if (length > MAX_TOKEN_LENGTH) {
+			throw new IllegalArgumentException("token of " + length + " characters");
+		}
+		if (tokensLength + 2 + length > tokens.length) {
+			tokens = Arrays.copyOf(tokens, Math.max(tokens.length * 2, tokensLength + 2 + length));
+		}
+		int offset = tokensLength;
+		tokens[offset] = (byte) (length >>> 8);
+		tokens[offset + 1] = (byte) length;
+		for (int i = start; i < end; i++) {
+			char c = input.charAt(i);
+			if (c > 0xff) {
+				throw new IllegalArgumentException("not a Latin-1 character: " + c);
+			}
+			tokens[offset + 2 + i - start] = (byte) (ignoreCase ? UriScanner.toLowerCase(c) : c);
+		}
+		tokensLength = offset + 2 + length;
+		return offset;
+	}
+
+	private void insert(int parent, int hash, int offset, int child) {
+		int mask = parents.length - 1;
+		int slot = slot(parent, hash, mask);
+		while (parents[slot] != NONE) {
+			slot = (slot + 1) & mask;
+		}
+		parents[slot] = parent;
+		hashes[slot] = hash;
+		offsets[slot] = offset;
+		children[slot] = child;
+		count++;
+	}
+
+	private void grow() {
+		int[] oldParents = parents;
+		int[] oldHashes = hashes;
+		int[] oldOffsets = offsets;
+		int[] oldChildren = children;
+		parents = new int[oldParents.length * 2];
+		hashes = new int[oldParents.length * 2];
+		offsets = new int[oldParents.length * 2];
+		children = new int[oldParents.length * 2];
+		Arrays.fill(parents, NONE);
+		count = 0;
+		for (int i = 0; i < oldParents.length; i++) {
+			if (oldParents[i] != NONE) {
+				insert(oldParents[i], oldHashes[i], oldOffsets[i], oldChildren[i]);
+			}
+		}
+	}
+
+	private boolean tokenEquals(int offset, CharSequence input, int start, int end, boolean ignoreCase) {
+		if (((tokens[offset] & 0xff) << 8 | (tokens[offset + 1] & 0xff)) != end - start) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			char c = input.charAt(i);
+			if (ignoreCase) {
+				c = UriScanner.toLowerCase(c);
+			}
+			if (c > 0xff || tokens[offset + 2 + i - start] != (byte) c) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int slot(int parent, int hash, int mask) {
+		int h = parent * 0x9e3779b9 + hash;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private static int hash(CharSequence input, int start, int end, boolean ignoreCase) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			char c = input.charAt(i);
+			hash = 31 * hash + (ignoreCase ? UriScanner.toLowerCase(c) : c);
+		}
+		return hash;
+	}
+
+	/**
+	 * @return the last index of {@code c} in {@code [start, end)} or -1
+	 */
+	static int lastIndexOf(char c, CharSequence input, int start, int end) {
+		for (int i = end - 1; i >= start; i--) {
+			if (input.charAt(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,243 @@
+package uri.implementation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Validates a file with one URI per line without copying it onto the heap.
+ *
+ * The file is cut into chunks that end at line boundaries. Every chunk is
+ * validated by its own fork-join task, which memory-maps it with
+ * {@link FileChannel#map} when it starts and reads it through an
+ * {@link AsciiBufferSequence}. Nothing references the mapping once the task
+ * is done, but it is only unmapped when the garbage collector reclaims it, so
+ * the number of mapped chunks depends on the collector, not on the number of
+ * workers. Lines are terminated by
+ * {@code "\n"} or {@code "\r\n"}. Line indexes are kept in a {@link BitSet},
+ * which limits a file to {@link Integer#MAX_VALUE} lines.
+ */
+public class UriBulkValidator {
+
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * Outcome of {@link UriBulkValidator#validate}.
+	 */
+	public static class Result {
+
+		private final long lineCount;
+		private final BitSet valid;
+		private final long[] counts;
+
+		Result(long lineCount, BitSet valid, long[] counts) {
+			this.lineCount = lineCount;
+			this.valid = valid;
+			this.counts = counts;
+		}
+
+		public long getLineCount() {
+			return lineCount;
+		}
+
+		/**
+		 * @param line
+		 *            the zero based line index
+		 */
+		public boolean isValid(long line) {
+			return valid.get(Math.toIntExact(line));
+		}
+
+		/**
+		 * @return a copy of the bitset with one bit set per valid line
+		 */
+		public BitSet getValidLines() {
+			return (BitSet) valid.clone();
+		}
+
+		/**
+		 * @param category
+		 *            {@link UriScanner#VALID} or one of the
+		 *            {@code UriScanner.INVALID_*} categories
+		 * @return the number of lines with that result
+		 */
+		public long getCount(int category) {
+			return counts[category];
+		}
+
+	}
+
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+
+	public UriBulkValidator() {
+		this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	public UriBulkValidator(ForkJoinPool pool, int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive");
+		}
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+	}
+
+	public Result validate(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			List<ChunkTask> tasks = new ArrayList<>();
+			boolean complete = false;
+			try {
+				long size = channel.size();
+				long start = 0;
+				while (start < size) {
+					long end = lineEnd(channel, Math.min(start + chunkSize, size), size);
+					if (end - start > Integer.MAX_VALUE) {
+						throw new IOException("line starting before offset " + end + " is too long to be mapped");
+					}
+					ChunkTask task = new ChunkTask(channel, start, end - start);
+					pool.execute(task);
+					tasks.add(task);
+					start = end;
+				}
+
+				// the chunks are in file order, so their lines can be appended
+				long lineCount = 0;
+				BitSet valid = new BitSet();
+				long[] counts = new long[UriScanner.RESULT_COUNT];
+				for (int t = 0; t < tasks.size(); t++) {
+					ChunkResult chunk;
+					try {
+						chunk = tasks.get(t).join();
+					} catch (UncheckedIOException e) {
+						throw e.getCause();
+					}
+					// let the result be collected once it is merged
+					tasks.set(t, null);
+					int offset = Math.toIntExact(lineCount);
+					BitSet chunkValid = chunk.valid;
+					for (int line = chunkValid.nextSetBit(0); line >= 0; line = chunkValid.nextSetBit(line + 1)) {
+						valid.set(offset + line);
+					}
+					for (int i = 0; i < counts.length; i++) {
+						counts[i] += chunk.counts[i];
+					}
+					lineCount += chunk.lineCount;
+				}
+				complete = true;
+				return new Result(lineCount, valid, counts);
+			} finally {
+				if (!complete) {
+					// the channel is closed next, tasks must not map it anymore
+					cancel(tasks);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Cancels the tasks that have not started and waits for the others.
+	 */
+	private static void cancel(List<ChunkTask> tasks) {
+		for (ChunkTask task : tasks) {
+			if (task != null) {
+				task.cancel(false);
+			}
+		}
+		for (ChunkTask task : tasks) {
+			if (task != null) {
+				task.quietlyJoin();
+			}
+		}
+	}
+
+	/**
+	 * @return the offset just behind the first {@code "\n"} at or after
+	 *         {@code from}, or {@code size} if there is none
+	 */
+	private static long lineEnd(FileChannel channel, long from, long size) throws IOException {
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		long position = from;
+		while (position < size) {
+			probe.clear();
+			int read = channel.read(probe, position);
+			if (read < 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (probe.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	private static class ChunkResult {
+
+		long lineCount;
+		final BitSet valid = new BitSet();
+		final long[] counts = new long[UriScanner.RESULT_COUNT];
+
+	}
+
+	private static class ChunkTask extends RecursiveTask<ChunkResult> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel channel;
+		private final long position;
+		private final long size;
+
+		ChunkTask(FileChannel channel, long position, long size) {
+			this.channel = channel;
+			this.position = position;
+			this.size = size;
+		}
+
+		@Override
+		protected ChunkResult compute() {
+			// the mapping becomes unreachable when the task is done
+			MappedByteBuffer chunk;
+			try {
+				chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			ChunkResult result = new ChunkResult();
+			AsciiBufferSequence view = new AsciiBufferSequence();
+			int[] bounds = new int[UriScanner.BOUNDS_LENGTH];
+			int limit = chunk.limit();
+			int start = 0;
+			while (start < limit) {
+				int end = start;
+				while (end < limit && chunk.get(end) != '\n') {
+					end++;
+				}
+				int next = end + 1;
+				if (end > start && chunk.get(end - 1) == '\r') {
+					end--;
+				}
+				int category = UriScanner.check(view.wrap(chunk, start, end - start), bounds);
+				if (category == UriScanner.VALID) {
+					result.valid.set(Math.toIntExact(result.lineCount));
+				}
+				result.counts[category]++;
+				result.lineCount++;
+				start = next;
+			}
+			return result;
+		}
+
+	}
+
+}
@@ -0,0 +1,250 @@
+package uri.implementation;
+
+import uri.Host;
+import uri.IPv4Address;
+import uri.Uri;
+
+/**
+ * Builds the canonical form of a URI and its 64 bit hash in one pass over the
+ * components. Two URIs that differ only in the following ways have the same
+ * canonical form:
+ * <ul>
+ * <li>case of the scheme and of a reg-name host, both are lower-cased</li>
+ * <li>case of the hex digits of percent-encodings, they are upper-cased</li>
+ * <li>percent-encoded "unreserved" characters, they are decoded</li>
+ * <li>leading zeros in the octets of an IPv4 host, they are removed</li>
+ * </ul>
+ *
+ * The hash is FNV-1a over the characters of the canonical form followed by
+ * the MurmurHash3 finalizer, so all of its bits are usable by hash-based
+ * sketches. It is updated as every component is written.
+ *
+ * An instance reuses its buffer and is not thread-safe.
+ */
+public final class UriCanonicalizer {
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private final StringBuilder builder = new StringBuilder(64);
+	private long state;
+	/** The last host written if it is an address, otherwise -1. */
+	private long address;
+
+	/**
+	 * @return the canonical form of {@code uri}, its hash is available from
+	 *         {@link #getHash()} until the next call
+	 */
+	public String canonicalize(Uri uri) {
+		start();
+		String scheme = uri.getScheme();
+		scheme(scheme, 0, scheme.length());
+		String userinfo = uri.getUserInfo();
+		if (userinfo != null) {
+			text(userinfo, 0, userinfo.length(), false);
+			append('@');
+		}
+		host(uri.getHost());
+		String path = uri.getPath();
+		text(path, 0, path.length(), false);
+		String query = uri.getQuery();
+		if (query != null) {
+			append('?');
+			text(query, 0, query.length(), false);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Same as {@link #canonicalize(Uri)} for the components found by
+	 * {@link UriScanner#scan}, without creating component strings.
+	 */
+	String canonicalize(CharSequence source, int[] bounds) {
+		start();
+		scheme(source, bounds[UriScanner.SCHEME_START], bounds[UriScanner.SCHEME_END]);
+		if (bounds[UriScanner.USERINFO_START] >= 0) {
+			text(source, bounds[UriScanner.USERINFO_START], bounds[UriScanner.USERINFO_END], false);
+			append('@');
+		}
+		host(source, bounds);
+		text(source, bounds[UriScanner.PATH_START], bounds[UriScanner.PATH_END], false);
+		if (bounds[UriScanner.QUERY_START] >= 0) {
+			append('?');
+			text(source, bounds[UriScanner.QUERY_START], bounds[UriScanner.QUERY_END], false);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Builds only the canonical host of {@code uri}, without creating strings
+	 * for URIs of this package's scanner.
+	 *
+	 * @return the hash that {@link #hash(CharSequence)} returns for the
+	 *         canonical host, the host itself is available from
+	 *         {@link #getHost()} until the next call
+	 */
+	public long hostHash(Uri uri) {
+		start();
+		if (uri instanceof OffsetUriImplementation) {
+			OffsetUriImplementation offsetUri = (OffsetUriImplementation) uri;
+			host(offsetUri.source(), offsetUri.bounds());
+		} else {
+			host(uri.getHost());
+		}
+		return getHash();
+	}
+
+	public long hostHash(Host host) {
+		start();
+		host(host);
+		return getHash();
+	}
+
+	/**
+	 * @return the hash of the last canonical form or host
+	 */
+	public long getHash() {
+		return finish(state);
+	}
+
+	/**
+	 * @return the host of the last {@link #hostHash} call in canonical form,
+	 *         an {@link IPv4AddressImplementation} if it is an address
+	 */
+	public Host getHost() {
+		if (address >= 0) {
+			return new IPv4AddressImplementation((int) address);
+		}
+		return new HostImplementation(builder.toString());
+	}
+
+	/**
+	 * @return the hash that {@link #getHash()} returns for the canonical form
+	 *         {@code text}
+	 */
+	public static long hash(CharSequence text) {
+		long h = FNV_OFFSET;
+		for (int i = 0; i < text.length(); i++) {
+			h = (h ^ text.charAt(i)) * FNV_PRIME;
+		}
+		return finish(h);
+	}
+
+	private static long finish(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private void start() {
+		builder.setLength(0);
+		state = FNV_OFFSET;
+	}
+
+	private void host(Host host) {
+		if (host instanceof IPv4Address) {
+			address(IPv4AddressImplementation.asInt((IPv4Address) host));
+		} else {
+			String name = host.toString();
+			regName(name, 0, name.length());
+		}
+	}
+
+	private void host(CharSequence source, int[] bounds) {
+		if (bounds[UriScanner.HOST_TYPE] == UriScanner.IPV4_ADDRESS) {
+			address(bounds[UriScanner.HOST_ADDRESS]);
+		} else {
+			regName(source, bounds[UriScanner.HOST_START], bounds[UriScanner.HOST_END]);
+		}
+	}
+
+	private void scheme(CharSequence source, int start, int end) {
+		for (int i = start; i < end; i++) {
+			append(UriScanner.toLowerCase(source.charAt(i)));
+		}
+		append(':');
+		append('/');
+		append('/');
+	}
+
+	/**
+	 * A decoded reg-name can turn out to be an "IPv4address", which is then
+	 * written without leading zeros like one found by the scanner.
+	 */
+	private void regName(CharSequence source, int start, int end) {
+		int from = builder.length();
+		address = -1;
+		boolean decoded = appendText(source, start, end, true);
+		if (decoded) {
+			address = UriScanner.parseIPv4Address(builder, from, builder.length());
+			if (address >= 0) {
+				builder.setLength(from);
+				appendAddress((int) address);
+			}
+		}
+		hash(from);
+	}
+
+	private void address(int address) {
+		int from = builder.length();
+		this.address = address & 0xffffffffL;
+		appendAddress(address);
+		hash(from);
+	}
+
+	private void appendAddress(int address) {
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			builder.append((address >>> shift) & 0xff);
+			if (shift > 0) {
+				builder.append('.');
+			}
+		}
+	}
+
+	private void text(CharSequence source, int start, int end, boolean lowerCase) {
+		int from = builder.length();
+		appendText(source, start, end, lowerCase);
+		hash(from);
+	}
+
+	/**
+	 * @return whether a percent-encoded character was decoded
+	 */
+	private boolean appendText(CharSequence source, int start, int end, boolean lowerCase) {
+		boolean decoded = false;
+		for (int i = start; i < end; i++) {
+			char c = source.charAt(i);
+			if (c == '%' && UriScanner.isPctEncoded(source, i, end)) {
+				int value = Character.digit(source.charAt(i + 1), 16) << 4 | Character.digit(source.charAt(i + 2), 16);
+				i += 2;
+				if (UriScanner.isUnreserved((char) value)) {
+					c = (char) value;
+					decoded = true;
+				} else {
+					builder.append('%').append(HEX[value >>> 4]).append(HEX[value & 0xf]);
+					continue;
+				}
+			}
+			builder.append(lowerCase ? UriScanner.toLowerCase(c) : c);
+		}
+		return decoded;
+	}
+
+	private void append(char c) {
+		builder.append(c);
+		state = (state ^ c) * FNV_PRIME;
+	}
+
+	private void hash(int from) {
+		long h = state;
+		for (int i = from; i < builder.length(); i++) {
+			h = (h ^ builder.charAt(i)) * FNV_PRIME;
+		}
+		state = h;
+	}
+
+}
@@ -0,0 +1,176 @@
+package uri.implementation;
+
+import java.nio.ByteBuffer;
+
+import uri.Host;
+import uri.IPv4Address;
+import uri.Uri;
+
+/**
+ * A compact binary encoding of parsed {@link Uri} instances.
+ *
+ * A record is a flag byte followed by the components in grammar order. Every
+ * text component is a varint length and its ASCII bytes, absent userinfo and
+ * query are omitted and an IPv4 host is stored as its 4 octets. Nothing
+ * depends on the byte order of the buffer:
+ *
+ * <pre>
+ * flags  scheme  [userinfo]  (host | address)  path  [query]
+ * </pre>
+ *
+ * {@link #decode} does not validate or copy anything. It returns an
+ * {@link OffsetUriImplementation} whose source is the record inside the
+ * buffer, so the buffer region must not be changed while the result is in
+ * use. Records are expected to be written by {@link #encode}.
+ */
+public final class UriCodec {
+
+	private static final int HAS_USERINFO = 1;
+	private static final int HAS_QUERY = 2;
+	private static final int IPV4_HOST = 4;
+
+	private UriCodec() {
+	}
+
+	/**
+	 * Writes {@code uri} at the position of {@code out} and advances it.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a component contains non-ASCII characters
+	 * @throws java.nio.BufferOverflowException
+	 *             if {@code out} has not enough room
+	 */
+	public static void encode(Uri uri, ByteBuffer out) {
+		String userinfo = uri.getUserInfo();
+		String query = uri.getQuery();
+		Host host = uri.getHost();
+
+		int flags = 0;
+		if (userinfo != null) {
+			flags |= HAS_USERINFO;
+		}
+		if (query != null) {
+			flags |= HAS_QUERY;
+		}
+		if (host instanceof IPv4Address) {
+			flags |= IPV4_HOST;
+		}
+		out.put((byte) flags);
+
+		putText(uri.getScheme(), out);
+		if (userinfo != null) {
+			putText(userinfo, out);
+		}
+		if (host instanceof IPv4Address) {
+			int address = IPv4AddressImplementation.asInt((IPv4Address) host);
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				out.put((byte) (address >>> shift));
+			}
+		} else {
+			putText(host.toString(), out);
+		}
+		putText(uri.getPath(), out);
+		if (query != null) {
+			putText(query, out);
+		}
+	}
+
+	/**
+	 * @return {@code uri} encoded into a new array
+	 */
+	public static byte[] encode(Uri uri) {
+		int size = 1 + maxSize(uri.getScheme()) + maxSize(uri.getUserInfo()) + 4 + maxSize(uri.getHost().toString())
+				+ maxSize(uri.getPath()) + maxSize(uri.getQuery());
+		ByteBuffer out = ByteBuffer.allocate(size);
+		encode(uri, out);
+		byte[] result = new byte[out.position()];
+		out.flip().get(result);
+		return result;
+	}
+
+	/**
+	 * Reads the record at the position of {@code in} and advances the position
+	 * behind it.
+	 */
+	public static Uri decode(ByteBuffer in) {
+		int start = in.position();
+		int flags = in.get();
+		int[] bounds = new int[UriScanner.BOUNDS_LENGTH];
+
+		readText(in, start, bounds, UriScanner.SCHEME_START);
+		if ((flags & HAS_USERINFO) != 0) {
+			readText(in, start, bounds, UriScanner.USERINFO_START);
+		} else {
+			bounds[UriScanner.USERINFO_START] = -1;
+			bounds[UriScanner.USERINFO_END] = -1;
+		}
+		if ((flags & IPV4_HOST) != 0) {
+			bounds[UriScanner.HOST_TYPE] = UriScanner.IPV4_ADDRESS;
+			int address = 0;
+			for (int i = 0; i < 4; i++) {
+				address = address << 8 | (in.get() & 0xff);
+			}
+			bounds[UriScanner.HOST_ADDRESS] = address;
+			bounds[UriScanner.HOST_START] = in.position() - start;
+			bounds[UriScanner.HOST_END] = bounds[UriScanner.HOST_START];
+		} else {
+			bounds[UriScanner.HOST_TYPE] = UriScanner.REG_NAME;
+			readText(in, start, bounds, UriScanner.HOST_START);
+		}
+		readText(in, start, bounds, UriScanner.PATH_START);
+		if ((flags & HAS_QUERY) != 0) {
+			readText(in, start, bounds, UriScanner.QUERY_START);
+		} else {
+			bounds[UriScanner.QUERY_START] = -1;
+			bounds[UriScanner.QUERY_END] = -1;
+		}
+
+		return new OffsetUriImplementation(new AsciiBufferSequence(in, start, in.position() - start), bounds);
+	}
+
+	private static int maxSize(String text) {
+		return text == null ? 0 : 5 + text.length();
+	}
+
+	private static void putText(String text, ByteBuffer out) {
+		putVarint(text.length(), out);
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c > 127) {
+				throw new IllegalArgumentException("not an ASCII character: " + c);
+			}
+			out.put((byte) c);
+		}
+	}
+
+	/**
+	 * Reads a varint length and records the following text as the component
+	 * starting at {@code index}, relative to {@code start}.
+	 */
+	private static void readText(ByteBuffer in, int start, int[] bounds, int index) {
+		int length = getVarint(in);
+		bounds[index] = in.position() - start;
+		bounds[index + 1] = bounds[index] + length;
+		in.position(in.position() + length);
+	}
+
+	private static void putVarint(int value, ByteBuffer out) {
+		while ((value & ~0x7f) != 0) {
+			out.put((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	private static int getVarint(ByteBuffer in) {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = in.get();
+			value |= (b & 0x7f) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+
+}
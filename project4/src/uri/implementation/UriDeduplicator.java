@@ -0,0 +1,231 @@
+package uri.implementation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import uri.Host;
+import uri.Uri;
+
+/**
+ * Streaming deduplication and distinct counts over parsed URIs in bounded
+ * memory.
+ *
+ * Every added URI is reduced to the 64 bit hash of its canonical form, see
+ * {@link UriCanonicalizer}, and its host to the hash of the canonical host. A {@link BloomFilter} of those hashes answers
+ * whether a URI was seen before, with a configurable rate of false positives
+ * and no false negatives. {@link HyperLogLog} sketches estimate the number of
+ * distinct URIs and hosts. Optionally one more sketch per host estimates the
+ * number of distinct URIs of that host, its memory grows with the number of
+ * hosts.
+ *
+ * An instance is not thread-safe. Parallel workers each use their own
+ * instance with the same configuration and {@link #merge} them at the end.
+ * {@link #writeTo} and {@link #readFrom} store the sketches in a file, for
+ * example to continue a crawl or to merge the results of several machines.
+ */
+public final class UriDeduplicator {
+
+	private static final int MAGIC = 0x55524444;
+	private static final int VERSION = 1;
+
+	private static final int REG_NAME = 0;
+	private static final int IPV4_ADDRESS = 1;
+
+	private final BloomFilter seen;
+	private final HyperLogLog uris;
+	private final HyperLogLog hosts;
+	private final int hostPrecision;
+	private final Map<Host, HyperLogLog> urisPerHost = new HashMap<>();
+	private final UriCanonicalizer canonicalizer = new UriCanonicalizer();
+	private long count;
+
+	/**
+	 * @param expectedUris
+	 *            the number of distinct URIs the Bloom filter is sized for
+	 * @param falsePositiveRate
+	 *            the rate at which {@link #add} reports an unseen URI as seen
+	 * @param precision
+	 *            the {@link HyperLogLog} precision of the URI and host counts
+	 * @param hostPrecision
+	 *            the precision of the per-host counts, 0 to not keep them
+	 */
+	public UriDeduplicator(long expectedUris, double falsePositiveRate, int precision, int hostPrecision) {
+		this(new BloomFilter(expectedUris, falsePositiveRate), new HyperLogLog(precision), new HyperLogLog(precision),
+				hostPrecision);
+		if (hostPrecision != 0
+				&& (hostPrecision < HyperLogLog.MIN_PRECISION || hostPrecision > HyperLogLog.MAX_PRECISION)) {
+			throw new IllegalArgumentException("host precision " + hostPrecision);
+		}
+	}
+
+	private UriDeduplicator(BloomFilter seen, HyperLogLog uris, HyperLogLog hosts, int hostPrecision) {
+		this.seen = seen;
+		this.uris = uris;
+		this.hosts = hosts;
+		this.hostPrecision = hostPrecision;
+	}
+
+	/**
+	 * @return {@code true} if {@code uri} was not added before, {@code false}
+	 *         if it probably was
+	 */
+	public boolean add(Uri uri) {
+		long hash = canonicalHash(uri);
+		count++;
+		uris.add(hash);
+		hosts.add(canonicalizer.hostHash(uri));
+		if (hostPrecision != 0) {
+			Host host = canonicalizer.getHost();
+			HyperLogLog perHost = urisPerHost.get(host);
+			if (perHost == null) {
+				perHost = new HyperLogLog(hostPrecision);
+				urisPerHost.put(host, perHost);
+			}
+			perHost.add(hash);
+		}
+		return !seen.add(hash);
+	}
+
+	/**
+	 * @return {@code false} if {@code uri} was certainly not added before
+	 */
+	public boolean mightContain(Uri uri) {
+		return seen.mightContain(canonicalHash(uri));
+	}
+
+	/**
+	 * @return the number of {@link #add} calls, including duplicates
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public long estimateDistinctUris() {
+		return uris.estimate();
+	}
+
+	public long estimateDistinctHosts() {
+		return hosts.estimate();
+	}
+
+	/**
+	 * @return the estimated number of distinct URIs with the given host, 0 if
+	 *         none was added or per-host counts are not kept
+	 */
+	public long estimateDistinctUris(Host host) {
+		canonicalizer.hostHash(host);
+		HyperLogLog perHost = urisPerHost.get(canonicalizer.getHost());
+		return perHost == null ? 0 : perHost.estimate();
+	}
+
+	/**
+	 * @return the number of hosts with a per-host count
+	 */
+	public int getHostCount() {
+		return urisPerHost.size();
+	}
+
+	/**
+	 * Adds everything that was added to {@code other}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if {@code other} was configured differently
+	 */
+	public void merge(UriDeduplicator other) {
+		if (other.hostPrecision != hostPrecision) {
+			throw new IllegalArgumentException("host precision " + other.hostPrecision + " instead of " + hostPrecision);
+		}
+		seen.merge(other.seen);
+		uris.merge(other.uris);
+		hosts.merge(other.hosts);
+		for (Map.Entry<Host, HyperLogLog> entry : other.urisPerHost.entrySet()) {
+			HyperLogLog perHost = urisPerHost.get(entry.getKey());
+			if (perHost == null) {
+				perHost = new HyperLogLog(hostPrecision);
+				urisPerHost.put(entry.getKey(), perHost);
+			}
+			perHost.merge(entry.getValue());
+		}
+		count += other.count;
+	}
+
+	/**
+	 * Writes all sketches to {@code file}, which is replaced if it exists.
+	 */
+	public void writeTo(Path file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(count);
+			out.writeByte(hostPrecision);
+			seen.writeTo(out);
+			uris.writeTo(out);
+			hosts.writeTo(out);
+			out.writeInt(urisPerHost.size());
+			for (Map.Entry<Host, HyperLogLog> entry : urisPerHost.entrySet()) {
+				Host host = entry.getKey();
+				if (host instanceof IPv4AddressImplementation) {
+					out.writeByte(IPV4_ADDRESS);
+					out.writeInt(((IPv4AddressImplementation) host).asInt());
+				} else {
+					String name = host.toString();
+					out.writeByte(REG_NAME);
+					out.writeInt(name.length());
+					out.writeBytes(name);
+				}
+				entry.getValue().writeTo(out);
+			}
+		}
+	}
+
+	/**
+	 * Reads a file created by {@link #writeTo}.
+	 */
+	public static UriDeduplicator readFrom(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("not a URI deduplicator: " + file);
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("unsupported URI deduplicator version " + version);
+			}
+			long count = in.readLong();
+			int hostPrecision = in.readByte();
+			UriDeduplicator result = new UriDeduplicator(BloomFilter.readFrom(in), HyperLogLog.readFrom(in),
+					HyperLogLog.readFrom(in), hostPrecision);
+			result.count = count;
+			int hostCount = in.readInt();
+			for (int i = 0; i < hostCount; i++) {
+				Host host;
+				if (in.readByte() == IPV4_ADDRESS) {
+					host = new IPv4AddressImplementation(in.readInt());
+				} else {
+					byte[] name = new byte[in.readInt()];
+					in.readFully(name);
+					host = new HostImplementation(new String(name, StandardCharsets.ISO_8859_1));
+				}
+				result.urisPerHost.put(host, HyperLogLog.readFrom(in));
+			}
+			return result;
+		}
+	}
+
+	private long canonicalHash(Uri uri) {
+		if (uri instanceof CanonicalUri) {
+			return ((CanonicalUri) uri).getCanonicalHash();
+		}
+		canonicalizer.canonicalize(uri);
+		return canonicalizer.getHash();
+	}
+
+}
@@ -2,22 +2,36 @@ package uri.implementation;
 
 import uri.Host;
 import uri.Uri;
-import java.util.regex.*;
 
 
 // TODO implement this class or another implementation of Uri
-public class UriImplementation implements Uri {
+public class UriImplementation extends AbstractCanonicalUri {
 
-	public String scheme;
-	public String query;
-	public String userinfo;
-	public String host;
-	public String path; 
+	private final String scheme;
+	private final String query;
+	private final String userinfo;
+	private final String host;
+	private final String path;
+	private final Host hostobject;
 
-	public Boolean queryfound;
-	public Boolean userinfofound;
-	public Boolean hostfound;
-	public Boolean pathfound;
+	/**
+	 * Absent components are passed as {@code null}.
+	 */
+	public UriImplementation(String scheme, String userinfo, String host, String path, String query) {
+		this.scheme = scheme;
+		this.userinfo = userinfo;
+		this.host = host;
+		this.path = path;
+		this.query = query;
+
+		String hoststring = host == null ? "" : host;
+		long address = UriScanner.parseIPv4Address(hoststring, 0, hoststring.length());
+		if (address >= 0) {
+			this.hostobject = new IPv4AddressImplementation((int) address);
+		} else {
+			this.hostobject = new HostImplementation(hoststring);
+		}
+	}
 
 	@Override
 	public String getScheme() {
@@ -26,76 +40,22 @@ public class UriImplementation implements Uri {
 
 	@Override
 	public String getQuery() {
-		if (queryfound){
-			return this.query;
-		}
-		return null;
+		return this.query;
 	}
 
 	@Override
 	public String getUserInfo() {
-		if (userinfofound){
-			return this.userinfo;
-		}
-		return null;
+		return this.userinfo;
 	}
 
 	@Override
 	public Host getHost() {
-		
-		if (hostfound){
-			String [] octetsplit;
-			Boolean octetfound=true;
-			while (true){
-				if (!(Pattern.matches("([\\.]|[0-9])*", host))){
-
-					octetfound=false;
-					break;
-				} else {
-					octetsplit=host.split("\\.");
-	
-					if (octetsplit.length!=4){
-
-						octetfound=false;
-						break;
-					} else {
-						for (String i:octetsplit){
-							if (i.length()>3){
-								octetfound=false;
-	
-								break;
-							} else {
-								int temp=Integer.parseInt(i);
-								if (temp>255){
-									octetfound=false;
-									break;
-								}
-							}
-						}
-					}
-				}
-				
-				break;
-			}
-
-			if (octetfound){
-				IPv4AddressImplementation result=new IPv4AddressImplementation(host);
-				return result;
-				} else {
-					HostImplementation result=new HostImplementation(host);
-					return result;
-				}
-			
-
-		} else {
-			HostImplementation result=new HostImplementation("");
-			return result;
-		}
+		return this.hostobject;
 	}
 
 	@Override
 	public String getPath() {
-		if (pathfound){
+		if (path != null){
 			return this.path;
 		} else {
 			return "";
@@ -0,0 +1,143 @@
+package uri.implementation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import uri.Uri;
+
+/**
+ * Parses a stream with one URI per line straight from a fixed size byte
+ * buffer.
+ *
+ * Lines are terminated by {@code "\n"} or {@code "\r\n"}. Every line is
+ * validated by {@link UriScanner} on an {@link AsciiCharSequence} over the
+ * buffer, no String is built for a line before it is known to be valid. The
+ * memory used does not depend on the size of the input. A line longer than
+ * the buffer size, counting a {@code "\r"} but not the {@code "\n"}, is
+ * reported as invalid with its first buffer-full of characters and skipped.
+ */
+public class UriLineReader {
+
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Receives the result for every line, in input order.
+	 */
+	public interface Handler {
+
+		/**
+		 * @param line
+		 *            the line number, starting with 1
+		 * @param uri
+		 *            the parsed {@link Uri}
+		 */
+		void valid(long line, Uri uri);
+
+		/**
+		 * @param line
+		 *            the line number, starting with 1
+		 * @param input
+		 *            the rejected line, only valid during this call
+		 */
+		void invalid(long line, CharSequence input);
+
+	}
+
+	private final ReadableByteChannel channel;
+	private final byte[] buffer;
+	private final ByteBuffer window;
+	private final AsciiCharSequence view = new AsciiCharSequence();
+	private final int[] bounds = new int[UriScanner.BOUNDS_LENGTH];
+
+	public UriLineReader(ReadableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param bufferSize
+	 *            the length of the longest line that is parsed
+	 */
+	public UriLineReader(ReadableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		// one more byte for the "\n" of a line that fills the buffer
+		this.buffer = new byte[bufferSize + 1];
+		this.window = ByteBuffer.wrap(buffer);
+	}
+
+	public UriLineReader(InputStream input) {
+		this(Channels.newChannel(input));
+	}
+
+	/**
+	 * Reads the channel up to its end and reports every line to
+	 * {@code handler}.
+	 *
+	 * @return the number of lines read
+	 */
+	public long readAll(Handler handler) throws IOException {
+		long line = 0;
+		int start = 0;
+		int limit = 0;
+		boolean skipping = false;
+
+		while (true) {
+			window.limit(buffer.length).position(limit);
+			int read = channel.read(window);
+			if (read < 0) {
+				if (!skipping && limit > start) {
+					emit(++line, start, limit, handler);
+				}
+				return line;
+			}
+
+			int scan = limit;
+			limit += read;
+			for (int i = scan; i < limit; i++) {
+				if (buffer[i] != '\n') {
+					continue;
+				}
+				if (skipping) {
+					skipping = false;
+				} else {
+					emit(++line, start, i, handler);
+				}
+				start = i + 1;
+			}
+
+			if (skipping) {
+				start = limit;
+			} else if (start == 0 && limit == buffer.length) {
+				emit(++line, 0, limit - 1, handler, false);
+				skipping = true;
+				start = limit;
+			}
+
+			// move the unfinished line to the front of the buffer
+			System.arraycopy(buffer, start, buffer, 0, limit - start);
+			limit -= start;
+			start = 0;
+		}
+	}
+
+	private void emit(long line, int start, int end, Handler handler) {
+		if (end > start && buffer[end - 1] == '\r') {
+			end--;
+		}
+		emit(line, start, end, handler, true);
+	}
+
+	private void emit(long line, int start, int end, Handler handler, boolean complete) {
+		view.wrap(buffer, start, end - start);
+		if (complete && UriScanner.scan(view, bounds)) {
+			String source = new String(buffer, start, end - start, StandardCharsets.ISO_8859_1);
+			handler.valid(line, new OffsetUriImplementation(source, bounds.clone()));
+		} else {
+			handler.invalid(line, view);
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+package uri.implementation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import uri.Uri;
+
+/**
+ * A bounded, thread-safe cache of parse results keyed by the input string.
+ *
+ * The cache is split into independently locked segments, each of which is an
+ * access ordered {@link LinkedHashMap} evicting its least recently used entry
+ * once it exceeds its share of the maximum size. Invalid inputs can be cached
+ * as well (negative caching). The cached {@link Uri} instances are immutable,
+ * so they are handed out to every caller as they are.
+ */
+public class UriParseCache {
+
+	private static final Object INVALID = new Object();
+
+	private final Segment[] segments;
+	private final boolean cacheInvalid;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maximumSize
+	 *            the maximum number of cached inputs, must be positive
+	 * @param cacheInvalid
+	 *            whether inputs that are not a valid {@link Uri} are cached too
+	 */
+	public UriParseCache(int maximumSize, boolean cacheInvalid) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("maximumSize must be positive");
+		}
+		int count = Integer.highestOneBit(Math.min(maximumSize, 4 * Runtime.getRuntime().availableProcessors()));
+		this.segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			// distribute the remainder so that the capacities add up to maximumSize
+			segments[i] = new Segment(maximumSize / count + (i < maximumSize % count ? 1 : 0));
+		}
+		this.cacheInvalid = cacheInvalid;
+	}
+
+	/**
+	 * @param uri
+	 *            the URI that will be parsed
+	 * @return the parsed {@link Uri} or {@code null} when {@code uri} is
+	 *         {@code null} or not a valid {@link Uri}
+	 */
+	public Uri parse(String uri) {
+		if (uri == null) {
+			return null;
+		}
+		Segment segment = segmentFor(uri);
+		Object cached;
+		synchronized (segment) {
+			cached = segment.get(uri);
+		}
+		if (cached != null) {
+			hits.increment();
+			return cached == INVALID ? null : (Uri) cached;
+		}
+
+		misses.increment();
+		Uri result = StatelessUriParser.INSTANCE.parse(uri);
+		if (result != null || cacheInvalid) {
+			synchronized (segment) {
+				segment.put(uri, result == null ? INVALID : result);
+			}
+		}
+		return result;
+	}
+
+	public long hitCount() {
+		return hits.sum();
+	}
+
+	public long missCount() {
+		return misses.sum();
+	}
+
+	public long evictionCount() {
+		return evictions.sum();
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	private Segment segmentFor(String uri) {
+		int hash = uri.hashCode();
+		hash ^= hash >>> 16;
+		return segments[hash & (segments.length - 1)];
+	}
+
+	private class Segment extends LinkedHashMap<String, Object> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+
+	}
+
+}
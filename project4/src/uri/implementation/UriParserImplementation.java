@@ -23,6 +23,10 @@ public class UriParserImplementation implements UriParser {
 
 	@Override
 	public Uri parse() {
+		userinfofound = false;
+		hostfound = false;
+		queryfound = false;
+		pathfound = false;
 
 		while (true) {
 			String[] schemesplit;
@@ -140,55 +144,20 @@ public class UriParserImplementation implements UriParser {
 			break;
 
 		}
-		UriImplementation result = new UriImplementation();
-
-		result.scheme = this.scheme;
-
-		if (userinfofound) {
-			result.userinfofound = true;
-			result.userinfo = this.userinfo;
-		} else {
-			result.userinfofound = false;
+		if (this.hostfound && !Pattern.matches("((\\w|[\\.]|\\%[0-9A-Fa-f]{2})*)", this.host)) {
+			return null;
 		}
 
-		if (this.hostfound) {
-			if (!Pattern.matches("((\\w|[\\.]|\\%[0-9A-Fa-f]{2})*)", this.host)) {
-				return null;
-			} else {
-				result.hostfound = true;
-				result.host = this.host;
-
-			}
-		} else {
-			result.hostfound = false;
+		if (this.pathfound && !Pattern.matches("((\\w|[\\.]|[\\/]|\\%[0-9A-Fa-f]{2})*)", this.path)) {
+			return null;
 		}
 
-		if (this.pathfound) {
-			if (!Pattern.matches("((\\w|[\\.]|[\\/]|\\%[0-9A-Fa-f]{2})*)", this.path)) {
-				return null;
-			} else {
-				result.pathfound = true;
-				result.path = this.path;
-
-			}
-
-		} else {
-			result.pathfound = false;
-		}
-
-		if (this.queryfound) {
-			if (!Pattern.matches("((\\w|[\\.]|[&]|[=]|\\%[0-9A-Fa-f]{2})*)", this.query)) {
-				return null;
-			} else {
-				result.queryfound = true;
-				result.query = this.query;
-			}
-
-		} else {
-			result.queryfound = false;
+		if (this.queryfound && !Pattern.matches("((\\w|[\\.]|[&]|[=]|\\%[0-9A-Fa-f]{2})*)", this.query)) {
+			return null;
 		}
 
-		return result;
+		return new UriImplementation(this.scheme, userinfofound ? this.userinfo : null,
+				hostfound ? this.host : null, pathfound ? this.path : null, queryfound ? this.query : null);
 
 	}
 
@@ -0,0 +1,309 @@
+package uri.implementation;
+
+import java.util.Arrays;
+
+import uri.Uri;
+
+/**
+ * Dispatches URIs to routes by scheme, host and path prefix.
+ *
+ * All routes are compiled into one trie whose levels are the scheme, the host
+ * labels from right to left and the path segments. A lookup follows one edge
+ * per scheme, label and segment of the URI, so its cost depends on the length
+ * of the URI but not on the number of routes. Nodes live in parallel int
+ * arrays and edges in {@link TrieEdges}, so a lookup neither allocates nor
+ * boxes.
+ *
+ * A route pattern consists of
+ * <ul>
+ * <li>a scheme or {@code "*"} for any scheme,</li>
+ * <li>a host such as {@code "example.com"}, a wildcard such as
+ * {@code "*.example.com"} matching any host below but not
+ * {@code "example.com"} itself, the same as in {@link HostTrie}, or
+ * {@code "*"} for any host,</li>
+ * <li>a path prefix of whole segments, {@code "/api"} matches
+ * {@code "/api/users"} but not {@code "/apis"}, {@code ""} and {@code "/"}
+ * match every path.</li>
+ * </ul>
+ * Schemes and hosts are compared ignoring ASCII case, paths are compared as
+ * they are, without decoding percent-encodings.
+ *
+ * If several routes match, an exact scheme beats {@code "*"}, then an exact
+ * host beats a wildcard host, a wildcard with more labels beats one with less,
+ * and finally the longest path prefix wins.
+ *
+ * A router is meant to be filled once, for example from configuration at
+ * startup, and then only read. {@link #match} writes no state, so any number
+ * of threads may dispatch concurrently after the last {@link #add} call once
+ * the router is published through a final or volatile field. Routes must not
+ * be added while other threads dispatch, build a new router and replace the
+ * reference instead.
+ */
+public class UriRouter {
+
+	public static final int NO_MATCH = -1;
+
+	private static final int ROOT = 0;
+	private static final int NONE = TrieEdges.NONE;
+
+	/** Per node: the path root behind an exact host, or {@link #NONE}. */
+	private int[] next = new int[16];
+	/** Per node: the node behind a {@code "*"} wildcard, or {@link #NONE}. */
+	private int[] any = new int[16];
+	/** Per path node: the route ending there, or {@link #NO_MATCH}. */
+	private int[] routes = new int[16];
+	private int[] parents = new int[16];
+	private int nodeCount;
+
+	private final TrieEdges edges = new TrieEdges();
+
+	private int routeCount;
+
+	public UriRouter() {
+		newNode(NONE);
+	}
+
+	/**
+	 * Adds a route, replacing the route of an equal pattern added before.
+	 *
+	 * @param route
+	 *            the non-negative id returned for matching URIs
+	 * @throws IllegalArgumentException
+	 *             if the host or path pattern is malformed or contains
+	 *             characters that no URI can contain
+	 */
+	public void add(String scheme, String host, String pathPrefix, int route) {
+		if (route < 0) {
+			throw new IllegalArgumentException("route must not be negative");
+		}
+		if (!pathPrefix.isEmpty() && pathPrefix.charAt(0) != '/') {
+			throw new IllegalArgumentException("path prefix must begin with \"/\": " + pathPrefix);
+		}
+
+		int node = scheme.equals("*") ? anyChild(ROOT) : child(ROOT, scheme, 0, scheme.length(), true);
+
+		if (host.equals("*")) {
+			node = anyChild(node);
+		} else {
+			boolean wildcard = host.startsWith("*.");
+			int hostStart = wildcard ? 2 : 0;
+			if (host.indexOf('*', hostStart) >= 0) {
+				throw new IllegalArgumentException("\"*\" is only allowed as first label: " + host);
+			}
+			int labelEnd = host.length();
+			while (true) {
+				int dot = host.lastIndexOf('.', labelEnd - 1);
+				int labelStart = dot < hostStart ? hostStart : dot + 1;
+				node = child(node, host, labelStart, labelEnd, true);
+				if (labelStart == hostStart) {
+					break;
+				}
+				labelEnd = dot;
+			}
+			if (wildcard) {
+				node = anyChild(node);
+			} else {
+				if (next[node] == NONE) {
+					// newNode may replace the node arrays, so store afterwards
+					int pathRoot = newNode(node);
+					next[node] = pathRoot;
+				}
+				node = next[node];
+			}
+		}
+
+		// a trailing "/" does not add an empty segment to the prefix
+		int pathEnd = pathPrefix.endsWith("/") ? pathPrefix.length() - 1 : pathPrefix.length();
+		int i = 0;
+		while (i < pathEnd) {
+			int segmentEnd = indexOf('/', pathPrefix, i + 1, pathEnd);
+			node = child(node, pathPrefix, i + 1, segmentEnd, false);
+			i = segmentEnd;
+		}
+
+		if (routes[node] == NO_MATCH) {
+			routeCount++;
+		}
+		routes[node] = route;
+	}
+
+	/**
+	 * @param pattern
+	 *            a pattern such as {@code "https://*.example.com/api"}, made of
+	 *            the parts described for {@link UriRouter}
+	 * @throws IllegalArgumentException
+	 *             if {@code pattern} is malformed
+	 */
+	public void add(String pattern, int route) {
+		int separator = pattern.indexOf("://");
+		if (separator <= 0) {
+			throw new IllegalArgumentException("not a route pattern: " + pattern);
+		}
+		int pathStart = pattern.indexOf('/', separator + 3);
+		if (pathStart < 0) {
+			pathStart = pattern.length();
+		}
+		add(pattern.substring(0, separator), pattern.substring(separator + 3, pathStart),
+				pattern.substring(pathStart), route);
+	}
+
+	/**
+	 * Does not allocate for URIs created by {@link UriScanner} based parsers,
+	 * except for creating the cached {@link uri.Host} of an IPv4 host once.
+	 *
+	 * @return the route of the best matching pattern or {@link #NO_MATCH}
+	 */
+	public int match(Uri uri) {
+		if (uri instanceof OffsetUriImplementation) {
+			OffsetUriImplementation offsetUri = (OffsetUriImplementation) uri;
+			CharSequence source = offsetUri.source();
+			CharSequence host = source;
+			int hostStart = offsetUri.bound(UriScanner.HOST_START);
+			int hostEnd = offsetUri.bound(UriScanner.HOST_END);
+			if (offsetUri.isIPv4Host()) {
+				// patterns use the form without leading zeros, which is cached
+				host = offsetUri.getHost().toString();
+				hostStart = 0;
+				hostEnd = host.length();
+			}
+			return match(source, offsetUri.bound(UriScanner.SCHEME_START), offsetUri.bound(UriScanner.SCHEME_END),
+					host, hostStart, hostEnd, source, offsetUri.bound(UriScanner.PATH_START),
+					offsetUri.bound(UriScanner.PATH_END));
+		}
+		String scheme = uri.getScheme();
+		String host = uri.getHost().toString();
+		String path = uri.getPath();
+		return match(scheme, 0, scheme.length(), host, 0, host.length(), path, 0, path.length());
+	}
+
+	/**
+	 * @return the number of distinct patterns added
+	 */
+	public int size() {
+		return routeCount;
+	}
+
+	private int match(CharSequence scheme, int schemeStart, int schemeEnd, CharSequence host, int hostStart,
+			int hostEnd, CharSequence path, int pathStart, int pathEnd) {
+		int node = edges.find(ROOT, scheme, schemeStart, schemeEnd, true);
+		if (node != NONE) {
+			int result = matchHost(node, host, hostStart, hostEnd, path, pathStart, pathEnd);
+			if (result != NO_MATCH) {
+				return result;
+			}
+		}
+		if (any[ROOT] != NONE) {
+			return matchHost(any[ROOT], host, hostStart, hostEnd, path, pathStart, pathEnd);
+		}
+		return NO_MATCH;
+	}
+
+	private int matchHost(int hostRoot, CharSequence host, int hostStart, int hostEnd, CharSequence path,
+			int pathStart, int pathEnd) {
+		int node = hostRoot;
+		boolean complete = false;
+		int labelEnd = hostEnd;
+		while (true) {
+			int dot = TrieEdges.lastIndexOf('.', host, hostStart, labelEnd);
+			int labelStart = dot < 0 ? hostStart : dot + 1;
+			int child = edges.find(node, host, labelStart, labelEnd, true);
+			if (child == NONE) {
+				break;
+			}
+			node = child;
+			if (dot < 0) {
+				complete = true;
+				break;
+			}
+			labelEnd = dot;
+		}
+
+		if (complete && next[node] != NONE) {
+			int result = matchPath(next[node], path, pathStart, pathEnd);
+			if (result != NO_MATCH) {
+				return result;
+			}
+			node = parents[node];
+		} else if (complete) {
+			node = parents[node];
+		}
+		// wildcards from the most to the least specific, each covers at least
+		// one more label
+		while (true) {
+			if (any[node] != NONE) {
+				int result = matchPath(any[node], path, pathStart, pathEnd);
+				if (result != NO_MATCH) {
+					return result;
+				}
+			}
+			if (node == hostRoot) {
+				return NO_MATCH;
+			}
+			node = parents[node];
+		}
+	}
+
+	private int matchPath(int pathRoot, CharSequence path, int pathStart, int pathEnd) {
+		int result = routes[pathRoot];
+		int node = pathRoot;
+		int i = pathStart;
+		while (i < pathEnd) {
+			int segmentEnd = indexOf('/', path, i + 1, pathEnd);
+			node = edges.find(node, path, i + 1, segmentEnd, false);
+			if (node == NONE) {
+				break;
+			}
+			if (routes[node] != NO_MATCH) {
+				result = routes[node];
+			}
+			i = segmentEnd;
+		}
+		return result;
+	}
+
+	private int anyChild(int node) {
+		if (any[node] == NONE) {
+			int child = newNode(node);
+			any[node] = child;
+		}
+		return any[node];
+	}
+
+	/**
+	 * @return the child of {@code parent} for the token, created if missing
+	 */
+	private int child(int parent, CharSequence input, int start, int end, boolean ignoreCase) {
+		int existing = edges.find(parent, input, start, end, ignoreCase);
+		if (existing != NONE) {
+			return existing;
+		}
+		int child = newNode(parent);
+		edges.add(parent, input, start, end, ignoreCase, child);
+		return child;
+	}
+
+	private int newNode(int parent) {
+		if (nodeCount == next.length) {
+			int length = next.length * 2;
+			next = Arrays.copyOf(next, length);
+			any = Arrays.copyOf(any, length);
+			routes = Arrays.copyOf(routes, length);
+			parents = Arrays.copyOf(parents, length);
+		}
+		next[nodeCount] = NONE;
+		any[nodeCount] = NONE;
+		routes[nodeCount] = NO_MATCH;
+		parents[nodeCount] = parent;
+		return nodeCount++;
+	}
+
+	private static int indexOf(char c, CharSequence input, int from, int end) {
+		for (int i = from; i < end; i++) {
+			if (input.charAt(i) == c) {
+				return i;
+			}
+		}
+		return end;
+	}
+
+}
@@ -0,0 +1,309 @@
+package uri.implementation;
+
+/**
+ * Single pass, regex free recognizer for the grammar in {@link uri.Uri}.
+ *
+ * The input is walked exactly once from left to right. Instead of copying
+ * the components, the scanner records their start and end offsets in a
+ * caller supplied {@code int[]} of length {@link #BOUNDS_LENGTH}. Absent
+ * optional components (userinfo, query) are marked with a start of
+ * {@code -1}. The host is classified in the same pass, an "IPv4address" host
+ * is stored as an int with the first octet in the highest byte.
+ */
+public final class UriScanner {
+
+	public static final int SCHEME_START = 0;
+	public static final int SCHEME_END = 1;
+	public static final int USERINFO_START = 2;
+	public static final int USERINFO_END = 3;
+	public static final int HOST_START = 4;
+	public static final int HOST_END = 5;
+	public static final int PATH_START = 6;
+	public static final int PATH_END = 7;
+	public static final int QUERY_START = 8;
+	public static final int QUERY_END = 9;
+	/** {@link #REG_NAME} or {@link #IPV4_ADDRESS}. */
+	public static final int HOST_TYPE = 10;
+	/** The address packed into an int, only set for {@link #IPV4_ADDRESS}. */
+	public static final int HOST_ADDRESS = 11;
+
+	public static final int BOUNDS_LENGTH = 12;
+
+	public static final int REG_NAME = 0;
+	public static final int IPV4_ADDRESS = 1;
+
+	/** Result of {@link #check} for a valid URI. */
+	public static final int VALID = 0;
+	/** The input does not start with a valid "scheme". */
+	public static final int INVALID_SCHEME = 1;
+	/** The "scheme" is not followed by {@code "://"}. */
+	public static final int INVALID_HIERARCHY = 2;
+	/** An illegal character in "userinfo" or "host". */
+	public static final int INVALID_AUTHORITY = 3;
+	/** An illegal character in "path". */
+	public static final int INVALID_PATH = 4;
+	/** An illegal character in "query". */
+	public static final int INVALID_QUERY = 5;
+	/** A "%" not followed by two hex digits. */
+	public static final int INVALID_PCT_ENCODING = 6;
+
+	/** Number of distinct results of {@link #check}. */
+	public static final int RESULT_COUNT = 7;
+
+	private static final byte ALPHA = 1;
+	private static final byte DIGIT = 2;
+	private static final byte HEXDIGIT = 4;
+	private static final byte UNRESERVED = 8;
+
+	/** Character classes of the grammar for every ASCII character. */
+	private static final byte[] CLASSES = new byte[128];
+
+	static {
+		for (char c = 0; c < 128; c++) {
+			byte classes = 0;
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+				classes |= ALPHA | UNRESERVED;
+			}
+			if (c >= '0' && c <= '9') {
+				classes |= DIGIT | HEXDIGIT | UNRESERVED;
+			}
+			if ((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')) {
+				classes |= HEXDIGIT;
+			}
+			if (c == '.') {
+				classes |= UNRESERVED;
+			}
+			CLASSES[c] = classes;
+		}
+	}
+
+	private UriScanner() {
+	}
+
+	/**
+	 * @param input
+	 *            the characters to recognize
+	 * @param bounds
+	 *            receives the component offsets, must have at least
+	 *            {@link #BOUNDS_LENGTH} elements, or {@code null} to only
+	 *            validate without allocating or recording anything
+	 * @return {@code true} if the whole input is a valid URI, the content of
+	 *         {@code bounds} is unchanged otherwise
+	 */
+	public static boolean scan(CharSequence input, int[] bounds) {
+		return check(input, bounds) == VALID;
+	}
+
+	/**
+	 * Same as {@link #scan}, but tells why an input was rejected.
+	 *
+	 * @return {@link #VALID} or one of the {@code INVALID_*} categories for
+	 *         the first error found
+	 */
+	public static int check(CharSequence input, int[] bounds) {
+		int length = input.length();
+
+		// scheme = ALPHA *( ALPHA / DIGIT )
+		if (length == 0 || !isAlpha(input.charAt(0))) {
+			return INVALID_SCHEME;
+		}
+		int i = 1;
+		while (i < length && isAlphaOrDigit(input.charAt(i))) {
+			i++;
+		}
+		int schemeEnd = i;
+
+		// ":" "//"
+		if (i + 3 > length || input.charAt(i) != ':' || input.charAt(i + 1) != '/' || input.charAt(i + 2) != '/') {
+			return INVALID_HIERARCHY;
+		}
+		i += 3;
+
+		// authority = [ userinfo "@" ] host
+		int authorityStart = i;
+		int at = -1;
+		int lastColon = -1;
+		while (i < length) {
+			char c = input.charAt(i);
+			if (c == '/' || c == '?') {
+				break;
+			} else if (c == '@') {
+				if (at >= 0) {
+					return INVALID_AUTHORITY;
+				}
+				at = i;
+				i++;
+			} else if (c == ':') {
+				lastColon = i;
+				i++;
+			} else if (c == '%') {
+				if (!isPctEncoded(input, i, length)) {
+					return INVALID_PCT_ENCODING;
+				}
+				i += 3;
+			} else if (isUnreserved(c)) {
+				i = skipRun(input, i + 1, length, '.', '.');
+			} else {
+				return INVALID_AUTHORITY;
+			}
+		}
+		// ":" is only allowed inside userinfo
+		if (lastColon >= 0 && lastColon > at) {
+			return INVALID_AUTHORITY;
+		}
+		int hostEnd = i;
+
+		// path = *( "/" *pchar )
+		if (i < length && input.charAt(i) == '/') {
+			while (i < length) {
+				char c = input.charAt(i);
+				if (c == '?') {
+					break;
+				} else if (c == '%') {
+					if (!isPctEncoded(input, i, length)) {
+						return INVALID_PCT_ENCODING;
+					}
+					i += 3;
+				} else if (c == '/' || isUnreserved(c)) {
+					i = skipRun(input, i + 1, length, '/', '/');
+				} else {
+					return INVALID_PATH;
+				}
+			}
+		}
+		int pathEnd = i;
+
+		// [ "?" query ], query = *( pchar / "&" / "=" )
+		int queryStart = -1;
+		if (i < length) {
+			i++;
+			queryStart = i;
+			while (i < length) {
+				char c = input.charAt(i);
+				if (c == '%') {
+					if (!isPctEncoded(input, i, length)) {
+						return INVALID_PCT_ENCODING;
+					}
+					i += 3;
+				} else if (c == '&' || c == '=' || isUnreserved(c)) {
+					i = skipRun(input, i + 1, length, '&', '=');
+				} else {
+					return INVALID_QUERY;
+				}
+			}
+		}
+
+		if (bounds != null) {
+			int hostStart = at >= 0 ? at + 1 : authorityStart;
+			bounds[SCHEME_START] = 0;
+			bounds[SCHEME_END] = schemeEnd;
+			bounds[USERINFO_START] = at >= 0 ? authorityStart : -1;
+			bounds[USERINFO_END] = at;
+			bounds[HOST_START] = hostStart;
+			bounds[HOST_END] = hostEnd;
+			bounds[PATH_START] = hostEnd;
+			bounds[PATH_END] = pathEnd;
+			bounds[QUERY_START] = queryStart;
+			bounds[QUERY_END] = queryStart >= 0 ? length : -1;
+			long address = parseIPv4Address(input, hostStart, hostEnd);
+			bounds[HOST_TYPE] = address >= 0 ? IPV4_ADDRESS : REG_NAME;
+			bounds[HOST_ADDRESS] = (int) address;
+		}
+		return VALID;
+	}
+
+	/**
+	 * @return {@code true} if {@code input[start, end)} matches the
+	 *         non-terminal "IPv4address"
+	 */
+	public static boolean isIPv4Address(CharSequence input, int start, int end) {
+		return parseIPv4Address(input, start, end) >= 0;
+	}
+
+	/**
+	 * @return the address in {@code input[start, end)} as an unsigned 32 bit
+	 *         value, or {@code -1} if the region does not match the
+	 *         non-terminal "IPv4address"
+	 */
+	public static long parseIPv4Address(CharSequence input, int start, int end) {
+		int i = start;
+		long address = 0;
+		for (int octet = 0; octet < 4; octet++) {
+			if (octet > 0) {
+				if (i >= end || input.charAt(i) != '.') {
+					return -1;
+				}
+				i++;
+			}
+			int digits = 0;
+			int value = 0;
+			while (i < end && digits < 4 && isDigit(input.charAt(i))) {
+				value = value * 10 + (input.charAt(i) - '0');
+				digits++;
+				i++;
+			}
+			if (digits == 0 || digits > 3 || value > 255) {
+				return -1;
+			}
+			address = (address << 8) | value;
+		}
+		return i == end ? address : -1;
+	}
+
+	static boolean isAlpha(char c) {
+		return c < 128 && (CLASSES[c] & ALPHA) != 0;
+	}
+
+	static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	static boolean isAlphaOrDigit(char c) {
+		return c < 128 && (CLASSES[c] & (ALPHA | DIGIT)) != 0;
+	}
+
+	static boolean isHexDigit(char c) {
+		return c < 128 && (CLASSES[c] & HEXDIGIT) != 0;
+	}
+
+	static boolean isUnreserved(char c) {
+		return c < 128 && (CLASSES[c] & UNRESERVED) != 0;
+	}
+
+	static boolean isRunChar(char c, char extra, char otherExtra) {
+		return isUnreserved(c) || c == extra || c == otherExtra;
+	}
+
+	/**
+	 * @return {@code c} with ASCII letters lower-cased, scheme and reg-name
+	 *         comparisons ignore only ASCII case
+	 */
+	static char toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	/**
+	 * @return the index of the first character at or after {@code from} that
+	 *         is neither "unreserved" nor one of the extra characters, byte
+	 *         backed inputs are checked eight bytes at a time by
+	 *         {@link AsciiKernels}
+	 */
+	static int skipRun(CharSequence input, int from, int length, char extra, char otherExtra) {
+		if (input instanceof AsciiCharSequence) {
+			return ((AsciiCharSequence) input).skipRun(from, length, extra, otherExtra);
+		}
+		if (input instanceof AsciiBufferSequence) {
+			return ((AsciiBufferSequence) input).skipRun(from, length, extra, otherExtra);
+		}
+		int i = from;
+		while (i < length && isRunChar(input.charAt(i), extra, otherExtra)) {
+			i++;
+		}
+		return i;
+	}
+
+	static boolean isPctEncoded(CharSequence input, int index, int length) {
+		return index + 2 < length && isHexDigit(input.charAt(index + 1)) && isHexDigit(input.charAt(index + 2));
+	}
+
+}
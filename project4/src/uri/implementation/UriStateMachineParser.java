@@ -0,0 +1,27 @@
+package uri.implementation;
+
+import uri.Uri;
+import uri.UriParser;
+
+/**
+ * A {@link UriParser} that recognizes the input in a single left to right pass
+ * with {@link UriScanner} instead of regular expressions.
+ */
+public class UriStateMachineParser implements UriParser {
+
+	private String uristring;
+	private final int[] bounds = new int[UriScanner.BOUNDS_LENGTH];
+
+	public void setParser(String uristring) {
+		this.uristring = uristring;
+	}
+
+	@Override
+	public Uri parse() {
+		if (!UriScanner.scan(uristring, bounds)) {
+			return null;
+		}
+		return new OffsetUriImplementation(uristring, bounds.clone());
+	}
+
+}
@@ -0,0 +1,225 @@
+package uri.implementation;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import uri.Host;
+import uri.Uri;
+
+/**
+ * A compact, column oriented store for many parsed URIs.
+ *
+ * Schemes and "reg-name" hosts are interned into a {@link SymbolTable} and
+ * stored as ids, IPv4 hosts as their packed address. The characters of
+ * userinfo, path and query of all rows share one byte array, each row only
+ * stores where its parts start. {@link #get} returns a lightweight
+ * {@link Uri} view of a row that reads these columns.
+ *
+ * The shared byte array limits a table to about 2 GB of userinfo, path and
+ * query characters, {@link #add} throws an {@link IllegalStateException} once
+ * that is exceeded. Adding rows is not thread-safe. Reading rows concurrently is safe once all
+ * rows are added and the table is safely published.
+ */
+public class UriTable {
+
+	private static final int IPV4_HOST = 1;
+	private static final int HAS_USERINFO = 2;
+	private static final int HAS_QUERY = 4;
+	/** The largest array length that all JVMs can allocate. */
+	private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+	private final SymbolTable symbols;
+	private final int[] bounds = new int[UriScanner.BOUNDS_LENGTH];
+
+	private int size;
+	private byte[] flags = new byte[16];
+	private int[] schemeIds = new int[16];
+	private int[] hosts = new int[16];
+	private int[] userinfoStarts = new int[16];
+	private int[] pathStarts = new int[16];
+	private int[] queryStarts = new int[16];
+	private byte[] chars = new byte[256];
+	private int charCount;
+
+	public UriTable() {
+		this(new SymbolTable());
+	}
+
+	/**
+	 * @param symbols
+	 *            the table schemes and hosts are interned into, may be shared
+	 *            with other tables or parsers
+	 */
+	public UriTable(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+
+	/**
+	 * Parses {@code uri} and appends it as a new row.
+	 *
+	 * @return the index of the new row or {@code -1} if {@code uri} is not a
+	 *         valid {@link Uri}, in which case nothing is added
+	 */
+	public int add(CharSequence uri) {
+		if (!UriScanner.scan(uri, bounds)) {
+			return -1;
+		}
+		int length = bounds[UriScanner.PATH_END] - bounds[UriScanner.PATH_START];
+		if (bounds[UriScanner.USERINFO_START] >= 0) {
+			length += bounds[UriScanner.USERINFO_END] - bounds[UriScanner.USERINFO_START];
+		}
+		if (bounds[UriScanner.QUERY_START] >= 0) {
+			length += bounds[UriScanner.QUERY_END] - bounds[UriScanner.QUERY_START];
+		}
+		// grow everything before changing anything, so a full table stays intact
+		if (charCount + (long) length > chars.length) {
+			chars = Arrays.copyOf(chars, capacity(chars.length, charCount + (long) length));
+		}
+		if (size == schemeIds.length) {
+			int capacity = capacity(size, size + 1L);
+			flags = Arrays.copyOf(flags, capacity);
+			schemeIds = Arrays.copyOf(schemeIds, capacity);
+			hosts = Arrays.copyOf(hosts, capacity);
+			userinfoStarts = Arrays.copyOf(userinfoStarts, capacity);
+			pathStarts = Arrays.copyOf(pathStarts, capacity);
+			queryStarts = Arrays.copyOf(queryStarts, capacity);
+		}
+
+		int rowFlags = 0;
+		schemeIds[size] = symbols.intern(uri, bounds[UriScanner.SCHEME_START], bounds[UriScanner.SCHEME_END]);
+		if (bounds[UriScanner.HOST_TYPE] == UriScanner.IPV4_ADDRESS) {
+			rowFlags |= IPV4_HOST;
+			hosts[size] = bounds[UriScanner.HOST_ADDRESS];
+		} else {
+			hosts[size] = symbols.intern(uri, bounds[UriScanner.HOST_START], bounds[UriScanner.HOST_END]);
+		}
+
+		userinfoStarts[size] = charCount;
+		if (bounds[UriScanner.USERINFO_START] >= 0) {
+			rowFlags |= HAS_USERINFO;
+			append(uri, bounds[UriScanner.USERINFO_START], bounds[UriScanner.USERINFO_END]);
+		}
+		pathStarts[size] = charCount;
+		append(uri, bounds[UriScanner.PATH_START], bounds[UriScanner.PATH_END]);
+		queryStarts[size] = charCount;
+		if (bounds[UriScanner.QUERY_START] >= 0) {
+			rowFlags |= HAS_QUERY;
+			append(uri, bounds[UriScanner.QUERY_START], bounds[UriScanner.QUERY_END]);
+		}
+		flags[size] = (byte) rowFlags;
+		return size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public SymbolTable getSymbols() {
+		return symbols;
+	}
+
+	/**
+	 * @return a view of the row, which creates component strings on demand
+	 */
+	public Uri get(int row) {
+		checkRow(row);
+		return new Row(row);
+	}
+
+	public int getSchemeId(int row) {
+		checkRow(row);
+		return schemeIds[row];
+	}
+
+	public boolean isIPv4Host(int row) {
+		checkRow(row);
+		return (flags[row] & IPV4_HOST) != 0;
+	}
+
+	/**
+	 * @return the {@link SymbolTable} id of a "reg-name" host or the packed
+	 *         address of an IPv4 host, see {@link #isIPv4Host}
+	 */
+	public int getHostValue(int row) {
+		checkRow(row);
+		return hosts[row];
+	}
+
+	/**
+	 * @return a length of at least {@code needed}, usually twice {@code length}
+	 * @throws IllegalStateException
+	 *             if {@code needed} exceeds the largest array length
+	 */
+	private static int capacity(int length, long needed) {
+		if (needed > MAX_LENGTH) {
+			throw new IllegalStateException("URI table is full, " + needed + " elements needed");
+		}
+		return (int) Math.min(MAX_LENGTH, Math.max(2L * length, needed));
+	}
+
+	private void append(CharSequence uri, int start, int end) {
+		// the scanner only accepts ASCII, so every char fits into a byte
+		for (int i = start; i < end; i++) {
+			chars[charCount++] = (byte) uri.charAt(i);
+		}
+	}
+
+	private int rowEnd(int row) {
+		return row + 1 < size ? userinfoStarts[row + 1] : charCount;
+	}
+
+	private String text(int start, int end) {
+		return new String(chars, start, end - start, StandardCharsets.ISO_8859_1);
+	}
+
+	private void checkRow(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("row " + row + ", size " + size);
+		}
+	}
+
+	private final class Row implements Uri {
+
+		private final int row;
+
+		Row(int row) {
+			this.row = row;
+		}
+
+		@Override
+		public String getScheme() {
+			return symbols.symbol(schemeIds[row]);
+		}
+
+		@Override
+		public String getQuery() {
+			if ((flags[row] & HAS_QUERY) == 0) {
+				return null;
+			}
+			return text(queryStarts[row], rowEnd(row));
+		}
+
+		@Override
+		public String getUserInfo() {
+			if ((flags[row] & HAS_USERINFO) == 0) {
+				return null;
+			}
+			return text(userinfoStarts[row], pathStarts[row]);
+		}
+
+		@Override
+		public Host getHost() {
+			if ((flags[row] & IPV4_HOST) != 0) {
+				return new IPv4AddressImplementation(hosts[row]);
+			}
+			return new HostImplementation(symbols.symbol(hosts[row]), hosts[row]);
+		}
+
+		@Override
+		public String getPath() {
+			return text(pathStarts[row], queryStarts[row]);
+		}
+
+	}
+
+}
@@ -4,8 +4,24 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.beans.Transient;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -13,6 +29,30 @@ import uri.Host;
 import uri.Uri;
 import uri.IPv4Address;
 import uri.UriParserFactory;
+import uri.implementation.AsciiBufferSequence;
+import uri.implementation.AsciiCharSequence;
+import uri.implementation.CanonicalUri;
+import uri.implementation.CidrMatcher;
+import uri.implementation.HostImplementation;
+import uri.implementation.HostMatcher;
+import uri.implementation.HostTrie;
+import uri.implementation.IPv4AddressImplementation;
+import uri.implementation.InternedUriImplementation;
+import uri.implementation.OffHeapUriStore;
+import uri.implementation.PathSegments;
+import uri.implementation.QueryParameters;
+import uri.implementation.StatelessUriParser;
+import uri.implementation.SymbolTable;
+import uri.implementation.UriBulkValidator;
+import uri.implementation.UriCanonicalizer;
+import uri.implementation.UriCodec;
+import uri.implementation.UriDeduplicator;
+import uri.implementation.UriLineReader;
+import uri.implementation.UriParseCache;
+import uri.implementation.UriParserImplementation;
+import uri.implementation.UriRouter;
+import uri.implementation.UriScanner;
+import uri.implementation.UriTable;
 
 /**
  * This class provides a very simple example of how to write tests for this
@@ -99,6 +139,26 @@ public class SimpleTests {
 
 	}
 
+	/**
+	 * Inputs on which the regex based parser deviated from the grammar.
+	 */
+	@Test
+	public void testGrammarDeviations() {
+		assertNull("\"_\" is not unreserved", UriParserFactory.create("http://a_b").parse());
+		assertNull("\"_\" is not unreserved", UriParserFactory.create("http://_@h").parse());
+		assertNull("\"_\" is not unreserved", UriParserFactory.create("http://h/a_b").parse());
+		assertNull("\"_\" is not unreserved", UriParserFactory.create("http://h?a_b=c").parse());
+
+		Uri uri = UriParserFactory.create("http://host?query").parse();
+		assertNotNull("The path may be empty before a query", uri);
+		assertEquals("host", uri.getHost().toString());
+		assertEquals("", uri.getPath());
+		assertEquals("query", uri.getQuery());
+
+		assertNull("The userinfo must not contain \"@\"", UriParserFactory.create("http://a@b@c").parse());
+		assertNull("The userinfo must not contain \"@\"", UriParserFactory.create("http://@@h").parse());
+	}
+
 	@Test
 	public void testHierarchyUserInfoColon() {
 		// assertNull("The userinfo is supposed to be null",
@@ -628,6 +688,753 @@ public class SimpleTests {
 
 	}
 
-	
+	@Test
+	public void testParseAll() {
+		Uri[] uris = UriParserFactory.parseAll(Arrays.asList("http://a@b/c?d", "9scheme://", null, "scheme://1.2.3.4"));
+		assertEquals(4, uris.length);
+		assertEquals("a", uris[0].getUserInfo());
+		assertEquals("b", uris[0].getHost().toString());
+		assertEquals("/c", uris[0].getPath());
+		assertEquals("d", uris[0].getQuery());
+		assertNull("The scheme started with a digit", uris[1]);
+		assertNull("The input was null", uris[2]);
+		assertNull("Stale userinfo from an earlier element", uris[3].getUserInfo());
+		assertNull("Stale query from an earlier element", uris[3].getQuery());
+		assertTrue("host must be an IPv4 address", isIPv4Address(uris[3].getHost()));
+	}
+
+	@Test
+	public void testParseAllParallel() {
+		List<String> input = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			input.add(i % 3 == 0 ? "9scheme://" + i : "http://host" + i + "/p?q=" + i);
+		}
+		Uri[] uris = UriParserFactory.parseAllParallel(input);
+		assertEquals(input.size(), uris.length);
+		for (int i = 0; i < uris.length; i++) {
+			if (i % 3 == 0) {
+				assertNull(uris[i]);
+			} else {
+				assertEquals("host" + i, uris[i].getHost().toString());
+				assertEquals("q=" + i, uris[i].getQuery());
+			}
+		}
+	}
+
+	@Test
+	public void testParseShared() throws InterruptedException {
+		assertNull(UriParserFactory.parse(null));
+		assertNull(UriParserFactory.parse("scheme:1.2.3.4"));
+
+		StringBuilder buffer = new StringBuilder("http://a@b/c?d");
+		Uri uri = UriParserFactory.parse(buffer);
+		buffer.setLength(0);
+		buffer.append("x://");
+		assertEquals("The result must not depend on the reused buffer", "/c", uri.getPath());
+
+		Thread[] threads = new Thread[8];
+		boolean[] failed = new boolean[threads.length];
+		for (int t = 0; t < threads.length; t++) {
+			int id = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10000; i++) {
+					Uri parsed = UriParserFactory.parse("http://h" + id + "/" + i);
+					if (!("/" + i).equals(parsed.getPath()) || !("h" + id).equals(parsed.getHost().toString())) {
+						failed[id] = true;
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+			assertTrue("Thread " + t + " saw a wrong result", !failed[t]);
+		}
+	}
+
+	@Test
+	public void testParseCache() {
+		UriParseCache cache = new UriParseCache(2, true);
+		Uri first = cache.parse("http://a");
+		assertTrue("The cached instance must be returned", first == cache.parse("http://a"));
+		assertNull(cache.parse("9scheme://"));
+		assertNull(cache.parse("9scheme://"));
+		assertEquals(2, cache.hitCount());
+		assertEquals(2, cache.missCount());
+
+		cache.parse("http://b");
+		cache.parse("http://c");
+		assertTrue("The cache must not grow past its maximum size", cache.size() <= 2);
+		assertTrue(cache.evictionCount() > 0);
+
+		UriParseCache positiveOnly = new UriParseCache(10, false);
+		assertNull(positiveOnly.parse("9scheme://"));
+		assertNull(positiveOnly.parse("9scheme://"));
+		assertEquals(0, positiveOnly.hitCount());
+		assertEquals(0, positiveOnly.size());
+	}
+
+	@Test
+	public void testLineReader() throws IOException {
+		String input = "http://a/b?c\r\n9scheme://\nscheme://this.line.is.too.long.for.the.buffer\n\nhttp://1.2.3.4";
+		List<String> results = new ArrayList<>();
+		UriLineReader reader = new UriLineReader(
+				Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII))), 16);
+		long lines = reader.readAll(new UriLineReader.Handler() {
+			@Override
+			public void valid(long line, Uri uri) {
+				results.add(line + " " + uri.getHost() + uri.getPath());
+			}
+
+			@Override
+			public void invalid(long line, CharSequence rejected) {
+				results.add(line + " invalid");
+			}
+		});
+		assertEquals(5, lines);
+		assertEquals(Arrays.asList("1 a/b", "2 invalid", "3 invalid", "4 invalid", "5 1.2.3.4"), results);
+
+		String full = "http://a/bcdefghi\r\nhttp://a/bcdefghij\nhttp://a/bcdefghijk\nhttp://a/bcdefghijkl\r\n";
+		results.clear();
+		reader = new UriLineReader(
+				Channels.newChannel(new ByteArrayInputStream(full.getBytes(StandardCharsets.US_ASCII))), 18);
+		assertEquals(4, reader.readAll(new UriLineReader.Handler() {
+			@Override
+			public void valid(long line, Uri uri) {
+				results.add(line + " " + uri.getPath());
+			}
+
+			@Override
+			public void invalid(long line, CharSequence rejected) {
+				results.add(line + " invalid " + rejected.length());
+			}
+		}));
+		assertEquals(Arrays.asList("1 /bcdefghi", "2 /bcdefghij", "3 invalid 18", "4 invalid 18"), results);
+	}
+
+	@Test
+	public void testBulkValidator() throws IOException {
+		Path file = Files.createTempFile("uris", ".txt");
+		try {
+			StringBuilder content = new StringBuilder();
+			for (int i = 0; i < 1000; i++) {
+				content.append(i % 4 == 0 ? "http://h/%zz" : i % 4 == 1 ? "http://h/p?q=" + i + "\r" : "http://h" + i);
+				content.append('\n');
+			}
+			content.append("s://x?/");
+			Files.write(file, content.toString().getBytes(StandardCharsets.US_ASCII));
+
+			UriBulkValidator.Result result = new UriBulkValidator(ForkJoinPool.commonPool(), 1000).validate(file);
+			assertEquals(1001, result.getLineCount());
+			assertEquals(750, result.getCount(UriScanner.VALID));
+			assertEquals(250, result.getCount(UriScanner.INVALID_PCT_ENCODING));
+			assertEquals(1, result.getCount(UriScanner.INVALID_QUERY));
+			BitSet valid = result.getValidLines();
+			for (int i = 0; i < 1000; i++) {
+				assertEquals("line " + i, i % 4 != 0, valid.get(i));
+			}
+			assertTrue(!result.isValid(1000));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testHostCached() {
+		Uri uri = UriParserFactory.create("http://10.0.200.255/a").parse();
+		Host host = uri.getHost();
+		assertTrue("The same host must be returned", host == uri.getHost());
+		byte[] octets = getIPv4Octets(host);
+		assertEquals((byte) 10, octets[0]);
+		assertEquals((byte) 0, octets[1]);
+		assertEquals((byte) 200, octets[2]);
+		assertEquals((byte) 255, octets[3]);
+
+		Uri regName = UriParserFactory.create("http://1..2.3").parse();
+		assertTrue("host must not be an IPv4 address", !isIPv4Address(regName.getHost()));
+		assertTrue("The same host must be returned", regName.getHost() == regName.getHost());
+	}
+
+	@Test
+	public void testIsValid() {
+		assertTrue(!UriParserFactory.isValid(null));
+		assertTrue(!UriParserFactory.isValid(""));
+		assertTrue(!UriParserFactory.isValid("scheme://:a"));
+		assertTrue(!UriParserFactory.isValid("scheme://?%2a%3B?"));
+		assertTrue(UriParserFactory.isValid("scheme://"));
+		assertTrue(UriParserFactory.isValid("http://%39%65@%35%ffA/23.76?..=&.."));
+		assertTrue(UriParserFactory.isValid(new StringBuilder("http://1.2.3.4/a")));
+	}
+
+	@Test
+	public void testIPv4AddressPacked() {
+		Host host = UriParserFactory.create("http://001.020.003.250").parse().getHost();
+		assertEquals("Leading zeros must be removed", "1.20.3.250", host.toString());
+		assertTrue("The normalized string must be cached", host.toString() == host.toString());
+
+		IPv4AddressImplementation address = (IPv4AddressImplementation) host;
+		assertEquals(0x011403fa, address.asInt());
+		assertEquals(250, address.getOctet(3));
+		assertEquals(0xfa000001L, new IPv4AddressImplementation("250.0.0.1").asLong());
+
+		byte[] octets = address.getOctets();
+		octets[0] = 99;
+		assertEquals("The octets must not be shared", (byte) 1, address.getOctets()[0]);
+		assertEquals(new IPv4AddressImplementation("1.20.3.250"), address);
+	}
+
+	@Test
+	public void testCidrMatcher() {
+		CidrMatcher matcher = new CidrMatcher();
+		matcher.add("10.0.0.0/8", 1);
+		matcher.add("10.20.0.0/16", 2);
+		matcher.add("10.20.30.40", 3);
+		matcher.add("192.168.1.128/25", 4);
+		assertEquals(4, matcher.size());
+
+		assertEquals(1, matcher.match(UriParserFactory.parse("http://10.1.2.3/")));
+		assertEquals(2, matcher.match(UriParserFactory.parse("http://10.20.0.1/")));
+		assertEquals(3, matcher.match(UriParserFactory.parse("http://010.020.030.040/")));
+		assertEquals(4, matcher.match(UriParserFactory.parse("http://192.168.1.200")));
+		assertEquals(CidrMatcher.NO_MATCH, matcher.match(UriParserFactory.parse("http://192.168.1.100")));
+		assertEquals(CidrMatcher.NO_MATCH, matcher.match(UriParserFactory.parse("http://example.com")));
+
+		matcher.add("0.0.0.0/0", 0);
+		assertEquals(0, matcher.match(UriParserFactory.parse("http://8.8.8.8")));
+		assertEquals(2, matcher.match(UriParserFactory.parse("http://10.20.255.255")));
+	}
+
+	@Test
+	public void testCidrMatcherMalformed() {
+		CidrMatcher matcher = new CidrMatcher();
+		String[] inputs = { "10.0.0.0/+8", "10.0.0.0/-8", "10.0.0.0/\u0668", "10.0.0.0/", "10.0.0.0/008",
+				"10.0.0.0/33", "10.0.0/8" };
+		for (String input : inputs) {
+			try {
+				matcher.add(input, 1);
+				fail("accepted " + input);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		assertEquals(0, matcher.size());
+	}
+
+	@Test
+	public void testSymbolTable() {
+		SymbolTable symbols = new SymbolTable();
+		StatelessUriParser parser = new StatelessUriParser(symbols);
+		InternedUriImplementation first = (InternedUriImplementation) parser.parse("http://example.com/a");
+		InternedUriImplementation second = (InternedUriImplementation) parser
+				.parse(new StringBuilder("http://u@example.com/b?c"));
+		InternedUriImplementation third = (InternedUriImplementation) parser.parse("https://1.2.3.4");
+
+		assertEquals(first.getSchemeId(), second.getSchemeId());
+		assertEquals(first.getHostId(), second.getHostId());
+		assertTrue("The scheme must be the canonical instance", first.getScheme() == second.getScheme());
+		assertTrue("The host must be the canonical instance",
+				first.getHost().toString() == second.getHost().toString());
+		assertEquals(first.getHostId(), ((HostImplementation) second.getHost()).getId());
+		assertEquals("example.com", symbols.symbol(first.getHostId()));
+
+		assertEquals(HostImplementation.NO_ID, third.getHostId());
+		assertTrue("host must be an IPv4 address", isIPv4Address(third.getHost()));
+		assertEquals(3, symbols.size());
+
+		assertEquals("u", second.getUserInfo());
+		assertEquals("/b", second.getPath());
+		assertEquals("c", second.getQuery());
+		assertNull(first.getUserInfo());
+		assertNull(first.getQuery());
+		assertEquals("1.2.3.4", third.getHost().toString());
+		assertEquals("", third.getPath());
+		Uri empty = parser.parse("http://@example.com?");
+		assertEquals("", empty.getUserInfo());
+		assertEquals("", empty.getPath());
+		assertEquals("", empty.getQuery());
+		assertEquals(UriParserFactory.parse("http://u@example.com/b?c"), second);
+		assertEquals(second, UriParserFactory.parse("HTTP://u@Example.com/b?c"));
+
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i + 3, symbols.intern("host" + i));
+		}
+		assertEquals(1003, symbols.size());
+		assertEquals(first.getHostId(), symbols.intern("example.com"));
+		assertEquals("host999", symbols.symbol(1002));
+	}
+
+	@Test
+	public void testUriTable() {
+		UriTable table = new UriTable();
+		String[] inputs = { "http://u:p@example.com/a/b?x=1", "9scheme://", "http://example.com", "ftp://1.2.3.4/",
+				"http://@h?" };
+		int[] rows = new int[inputs.length];
+		for (int i = 0; i < 40; i++) {
+			for (int j = 0; j < inputs.length; j++) {
+				rows[j] = table.add(inputs[j]);
+			}
+		}
+		assertEquals(-1, rows[1]);
+		assertEquals(160, table.size());
+
+		for (int j = 0; j < inputs.length; j++) {
+			if (j == 1) {
+				continue;
+			}
+			Uri expected = UriParserFactory.parse(inputs[j]);
+			Uri row = table.get(rows[j]);
+			assertEquals(expected.getScheme(), row.getScheme());
+			assertEquals(expected.getUserInfo(), row.getUserInfo());
+			assertEquals(expected.getHost().toString(), row.getHost().toString());
+			assertEquals(expected.getPath(), row.getPath());
+			assertEquals(expected.getQuery(), row.getQuery());
+		}
+		assertEquals(table.getSchemeId(rows[0]), table.getSchemeId(rows[2]));
+		assertEquals(table.getHostValue(rows[0]), table.getHostValue(rows[2]));
+		assertTrue(table.isIPv4Host(rows[3]));
+		assertEquals(0x01020304, table.getHostValue(rows[3]));
+	}
+
+	@Test
+	public void testOffHeapStore() throws IOException {
+		Path file = Files.createTempFile("uris", ".store");
+		try {
+			List<String> input = Arrays.asList("http://u@example.com/a?b=c", "9scheme://", "ftp://1.2.3.4",
+					new StringBuilder("http://").append("x/y").toString(), "http://h/" + "p".repeat(100_000));
+			assertEquals(4, OffHeapUriStore.write(file, input));
+
+			OffHeapUriStore store = OffHeapUriStore.open(file);
+			assertEquals(4, store.size());
+			Uri first = store.get(0);
+			assertEquals("http", first.getScheme());
+			assertEquals("u", first.getUserInfo());
+			assertEquals("example.com", first.getHost().toString());
+			assertEquals("/a", first.getPath());
+			assertEquals("b=c", first.getQuery());
+			assertTrue("host must be an IPv4 address", isIPv4Address(store.get(1).getHost()));
+			assertEquals("/y", store.get(2).getPath());
+			assertNull(store.get(2).getQuery());
+			// longer than the buffer of the writer
+			assertEquals("/" + "p".repeat(100_000), store.get(3).getPath());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testCodec() {
+		String[] inputs = { "http://u:p@example.com/a/b?x=1&y", "scheme://", "ftp://001.2.3.255/", "http://@?",
+				"http://h/" + "p".repeat(300) };
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		for (String input : inputs) {
+			UriCodec.encode(UriParserFactory.parse(input), buffer);
+		}
+		buffer.flip();
+		for (String input : inputs) {
+			Uri expected = UriParserFactory.parse(input);
+			Uri decoded = UriCodec.decode(buffer);
+			assertEquals(expected.getScheme(), decoded.getScheme());
+			assertEquals(expected.getUserInfo(), decoded.getUserInfo());
+			assertEquals(expected.getHost().toString(), decoded.getHost().toString());
+			assertEquals(isIPv4Address(expected.getHost()), isIPv4Address(decoded.getHost()));
+			assertEquals(expected.getPath(), decoded.getPath());
+			assertEquals(expected.getQuery(), decoded.getQuery());
+		}
+		assertEquals(0, buffer.remaining());
+
+		byte[] bytes = UriCodec.encode(UriParserFactory.parse("http://1.2.3.4/a"));
+		assertEquals("/a", UriCodec.decode(ByteBuffer.wrap(bytes)).getPath());
+
+		ByteBuffer littleEndian = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+		UriCodec.encode(foreign(UriParserFactory.parse("http://1.2.3.4/a")), littleEndian);
+		UriCodec.encode(UriParserFactory.parse("http://1.2.3.4/a"), littleEndian);
+		littleEndian.flip();
+		assertEquals("1.2.3.4", UriCodec.decode(littleEndian).getHost().toString());
+		assertEquals("1.2.3.4", UriCodec.decode(littleEndian.order(ByteOrder.BIG_ENDIAN)).getHost().toString());
+	}
+
+	/**
+	 * @return {@code uri} with a host that is not one of the implementations
+	 *         of this project
+	 */
+	private static Uri foreign(Uri uri) {
+		Host host = uri.getHost();
+		Host foreignHost;
+		if (host instanceof IPv4Address) {
+			foreignHost = new IPv4Address() {
+				@Override
+				public byte[] getOctets() {
+					return ((IPv4Address) host).getOctets();
+				}
+
+				@Override
+				public String toString() {
+					return host.toString();
+				}
+			};
+		} else {
+			foreignHost = new Host() {
+				@Override
+				public String toString() {
+					return host.toString();
+				}
+			};
+		}
+		return new Uri() {
+			@Override
+			public String getScheme() {
+				return uri.getScheme();
+			}
+
+			@Override
+			public String getQuery() {
+				return uri.getQuery();
+			}
+
+			@Override
+			public String getUserInfo() {
+				return uri.getUserInfo();
+			}
+
+			@Override
+			public Host getHost() {
+				return foreignHost;
+			}
+
+			@Override
+			public String getPath() {
+				return uri.getPath();
+			}
+		};
+	}
+
+	/**
+	 * Places one byte in every lane of a run checked eight bytes at a time,
+	 * and compares the byte array and buffer views, which use the word kernels,
+	 * with a String, which is checked one char at a time.
+	 */
+	@Test
+	public void testAsciiKernels() {
+		String run = "abcdefghijklmnopqrstuvwx";
+		String[] templates = { "http://" + run + "/p", "http://h/" + run + "?q", "http://h/p?" + run };
+		char[] bytes = { ' ', '"', '%', '-', '.', '/', '0', '9', '?', '@', 'A', 'Z', '[', '_', '`', '{', '~', '&',
+				'=', 0x7f, 0x80, 0xc3, 0xff, 0 };
+		int[] expected = new int[UriScanner.BOUNDS_LENGTH];
+		int[] actual = new int[UriScanner.BOUNDS_LENGTH];
+		for (String template : templates) {
+			int runStart = template.indexOf(run);
+			for (int lane = 0; lane < 16; lane++) {
+				for (char c : bytes) {
+					char[] chars = template.toCharArray();
+					chars[runStart + lane] = c;
+					String text = new String(chars);
+					Arrays.fill(expected, -2);
+					int result = UriScanner.check(text, expected);
+					if (c >= 0x80) {
+						assertTrue("non-ASCII byte accepted: " + (int) c, result != UriScanner.VALID);
+					}
+
+					byte[] encoded = text.getBytes(StandardCharsets.ISO_8859_1);
+					for (int offset = 0; offset < 8; offset++) {
+						String message = template + ", lane " + lane + ", byte " + (int) c + ", offset " + offset;
+						byte[] array = new byte[offset + encoded.length + 3];
+						System.arraycopy(encoded, 0, array, offset, encoded.length);
+						ByteBuffer heap = ByteBuffer.wrap(array);
+						ByteBuffer direct = ByteBuffer.allocateDirect(array.length);
+						direct.put(array).clear();
+						CharSequence[] views = { new AsciiCharSequence(array, offset, encoded.length),
+								new AsciiBufferSequence(heap, offset, encoded.length),
+								new AsciiBufferSequence(direct, offset, encoded.length) };
+						for (CharSequence view : views) {
+							Arrays.fill(actual, -2);
+							assertEquals(message, result, UriScanner.check(view, actual));
+							assertTrue(message, Arrays.equals(expected, actual));
+						}
+					}
+				}
+			}
+		}
+
+		byte[] query = "http://h/p?a=1&bb=22&ccc=333&dddd=4444".getBytes(StandardCharsets.US_ASCII);
+		assertEquals(UriScanner.VALID, UriScanner.check(new AsciiCharSequence(query, 0, query.length), null));
+		byte[] path = "http://h/aaaaaaa/bbbbbbbb/cccccccccc".getBytes(StandardCharsets.US_ASCII);
+		assertEquals(UriScanner.VALID, UriScanner.check(new AsciiCharSequence(path, 0, path.length), null));
+		byte[] slash = "http://h/p?aaaaaaa/bbbbbbbb".getBytes(StandardCharsets.US_ASCII);
+		assertEquals(UriScanner.INVALID_QUERY, UriScanner.check(new AsciiCharSequence(slash, 0, slash.length), null));
+	}
+
+	@Test
+	public void testParseBytes() {
+		byte[] bytes = "xxhttp://u@1.2.3.4/a?b=cyy".getBytes(StandardCharsets.US_ASCII);
+		Uri uri = UriParserFactory.parseBytes(bytes, 2, bytes.length - 4);
+		Arrays.fill(bytes, (byte) 'z');
+		assertEquals("The result must not depend on the reused array", "http", uri.getScheme());
+		assertEquals("u", uri.getUserInfo());
+		assertTrue("host must be an IPv4 address", isIPv4Address(uri.getHost()));
+		assertEquals("/a", uri.getPath());
+		assertEquals("b=c", uri.getQuery());
+
+		byte[] nonAscii = "http://h\u00e9".getBytes(StandardCharsets.UTF_8);
+		assertNull(UriParserFactory.parseBytes(nonAscii, 0, nonAscii.length));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(64);
+		direct.put("  scheme://host/p".getBytes(StandardCharsets.US_ASCII)).flip().position(2);
+		Uri fromBuffer = UriParserFactory.parseBytes(direct);
+		assertEquals(2, direct.position());
+		assertEquals("host", fromBuffer.getHost().toString());
+		assertEquals("/p", fromBuffer.getPath());
+		assertNull(fromBuffer.getQuery());
+		assertNull(UriParserFactory.parseBytes(ByteBuffer.wrap(new byte[] { 'h', ':', '/', '/', (byte) 0xff })));
+		assertNull(UriParserFactory.parseBytes(null, 0, 0));
+		assertNull(UriParserFactory.parseBytes((ByteBuffer) null));
+	}
+
+	@Test
+	public void testQueryParameters() {
+		QueryParameters parameters = QueryParameters.of(UriParserFactory.parse("http://h/?a=1&&b=&c&a=2=3&%41=x"));
+		assertEquals(5, parameters.size());
+		assertTrue(parameters.keyEquals(0, "a"));
+		assertEquals("1", parameters.getValue(0));
+		assertEquals("", parameters.getValue(1));
+		assertTrue("b= has an empty value", parameters.hasValue(1));
+		assertEquals("c", parameters.getKey(2));
+		assertTrue("c has no value", !parameters.hasValue(2));
+		assertEquals("2=3", parameters.getValue(3));
+		assertTrue(parameters.valueEquals(3, "2=3"));
+		assertEquals("The first parameter wins", "1", parameters.getValue("a"));
+		assertEquals("Keys are not decoded", 4, parameters.indexOf("%41"));
+		assertEquals(-1, parameters.indexOf("A"));
+		assertNull(parameters.getValue("d"));
+
+		Uri uri = UriParserFactory.parse("http://h/?x=y");
+		assertTrue("The view is cached", QueryParameters.of(uri) == QueryParameters.of(uri));
+		assertEquals(0, QueryParameters.of(UriParserFactory.parse("http://h/")).size());
+		assertEquals(0, QueryParameters.of(UriParserFactory.parse("http://h/?")).size());
+
+		UriParserImplementation legacy = new UriParserImplementation();
+		legacy.setParser("http://h/?k=v");
+		assertEquals("v", QueryParameters.of(legacy.parse()).getValue("k"));
+	}
+
+	@Test
+	public void testPathSegments() {
+		PathSegments segments = PathSegments.of(UriParserFactory.parse("http://h/api/v1//users/?x=y"));
+		assertEquals(5, segments.size());
+		assertTrue(segments.segmentEquals(0, "api"));
+		assertEquals("", segments.getSegment(2));
+		assertEquals("", segments.getSegment(4));
+		assertTrue(segments.startsWith("api", "v1"));
+		assertTrue(!segments.startsWith("api", "v2"));
+		assertEquals("/api/v1//users/", segments.toString());
+		assertEquals(0, PathSegments.of(UriParserFactory.parse("http://h")).size());
+		assertEquals(1, PathSegments.of(UriParserFactory.parse("http://h/")).size());
+
+		String[][] dotSegments = { { "/a/b/c/./../../g", "/a/g" }, { "/a/b/..", "/a/" }, { "/a/.", "/a/" },
+				{ "/..", "/" }, { "/../a/..b/.c", "/a/..b/.c" }, { "/a//../b", "/a/b" }, { "/a/b", "/a/b" } };
+		for (String[] example : dotSegments) {
+			Uri uri = UriParserFactory.parse("http://h" + example[0]);
+			assertEquals(example[0], example[1], PathSegments.of(uri).removeDotSegments().toString());
+		}
+		assertTrue("Nothing to remove", segments.removeDotSegments() == segments);
+	}
+
+	@Test
+	public void testCanonicalForm() {
+		String[][] examples = { { "HTTP://Example.COM/a%2fb", "http://example.com/a%2Fb" },
+				{ "http://h/%41%2e%7a?q=%3d%2D", "http://h/A.z?q=%3D%2D" },
+				{ "http://U%3a@h", "http://U%3A@h" }, { "http://001.002.003.004/", "http://1.2.3.4/" },
+				{ "http://%30%30%31.2.3.4", "http://1.2.3.4" }, { "http://%45x.com/", "http://ex.com/" } };
+		for (String[] example : examples) {
+			CanonicalUri uri = (CanonicalUri) UriParserFactory.parse(example[0]);
+			assertEquals(example[0], example[1], uri.getCanonicalForm());
+		}
+
+		Uri upper = UriParserFactory.parse("HTTP://EXAMPLE.com/%7e?a=%41");
+		Uri lower = UriParserFactory.parse("http://example.com/%7E?a=A");
+		assertEquals(upper, lower);
+		assertEquals(upper.hashCode(), lower.hashCode());
+		assertTrue(!upper.equals(UriParserFactory.parse("http://example.com/%7E?a=a")));
+
+		UriParserImplementation parser = new UriParserImplementation();
+		parser.setParser("http://010.0.0.1/%2f");
+		Uri legacy = parser.parse();
+		assertEquals("Both parsers share the canonical form", UriParserFactory.parse("http://10.0.0.1/%2F"), legacy);
+		assertEquals(legacy.hashCode(), UriParserFactory.parse("http://10.0.0.1/%2F").hashCode());
+
+		UriCanonicalizer canonicalizer = new UriCanonicalizer();
+		canonicalizer.canonicalize(upper);
+		assertEquals(((CanonicalUri) lower).getCanonicalHash(), canonicalizer.getHash());
+	}
+
+	@Test
+	public void testDeduplicator() throws IOException {
+		UriDeduplicator first = new UriDeduplicator(100000, 0.01, 14, 10);
+		UriDeduplicator second = new UriDeduplicator(100000, 0.01, 14, 10);
+		int falsePositives = 0;
+		for (int i = 0; i < 20000; i++) {
+			UriDeduplicator worker = i % 2 == 0 ? first : second;
+			if (!worker.add(UriParserFactory.parse("http://host" + (i % 10) + ".example.com/page" + i))) {
+				falsePositives++;
+			}
+		}
+		assertTrue("false positives " + falsePositives, falsePositives < 400);
+		assertTrue("A case variant is a duplicate",
+				!first.add(UriParserFactory.parse("HTTP://HOST0.example.com/p%61ge0")));
+		assertTrue(second.mightContain(UriParserFactory.parse("http://host1.example.com/page1")));
+
+		first.merge(second);
+		assertEquals(20001, first.getCount());
+		assertTrue(first.mightContain(UriParserFactory.parse("http://host1.example.com/page1")));
+		long distinct = first.estimateDistinctUris();
+		assertTrue("estimate " + distinct, Math.abs(distinct - 20000) < 1000);
+		assertEquals(10, first.estimateDistinctHosts());
+		assertEquals(10, first.getHostCount());
+		long perHost = first.estimateDistinctUris(new HostImplementation("Host3.example.com"));
+		assertTrue("estimate " + perHost, Math.abs(perHost - 2000) < 300);
+
+		Path file = Files.createTempFile("dedup", ".bin");
+		try {
+			first.writeTo(file);
+			UriDeduplicator read = UriDeduplicator.readFrom(file);
+			assertEquals(first.getCount(), read.getCount());
+			assertEquals(distinct, read.estimateDistinctUris());
+			assertEquals(perHost, read.estimateDistinctUris(new HostImplementation("host3.example.com")));
+			assertTrue(read.mightContain(UriParserFactory.parse("http://host9.example.com/page19999")));
+		} finally {
+			Files.delete(file);
+		}
+
+		UriDeduplicator encoded = new UriDeduplicator(1000, 0.01, 14, 10);
+		encoded.add(UriParserFactory.parse("http://a.com/x"));
+		encoded.add(UriParserFactory.parse("http://%61.com/x"));
+		encoded.add(foreign(UriParserFactory.parse("http://A.com/y")));
+		encoded.add(UriParserFactory.parse("http://%31.2.3.4/x"));
+		encoded.add(foreign(UriParserFactory.parse("http://1.2.3.4/y")));
+		assertEquals(4, encoded.estimateDistinctUris());
+		assertEquals(2, encoded.estimateDistinctHosts());
+		assertEquals(2, encoded.getHostCount());
+		assertEquals(2, encoded.estimateDistinctUris(new HostImplementation("%41.com")));
+		assertEquals(2, encoded.estimateDistinctUris(new IPv4AddressImplementation("1.2.3.4")));
+	}
+
+	@Test
+	public void testRouter() {
+		UriRouter router = new UriRouter();
+		router.add("*://*", 0);
+		router.add("http://example.com", 1);
+		router.add("http://example.com/api/", 2);
+		router.add("http://example.com/api/v1", 3);
+		router.add("*://*.example.com/api", 4);
+		router.add("https://*.cdn.example.com", 5);
+		router.add("*://*.com/static", 6);
+		router.add("ftp://10.0.0.1/pub", 7);
+		router.add("http", "example.com", "/api", 8);
+		assertEquals("Equal patterns replace each other", 8, router.size());
+
+		String[][] examples = { { "http://example.com", "1" }, { "HTTP://Example.COM/other", "1" },
+				{ "http://example.com/api", "8" }, { "http://example.com/apis", "1" },
+				{ "http://example.com/api/v1/users?x=y", "3" }, { "http://example.com/api/v10", "8" },
+				{ "https://example.com/api", "0" }, { "https://example.com/static/a", "6" },
+				{ "http://www.example.com/api/x", "4" }, { "http://www.example.com/x", "0" },
+				{ "https://a.b.cdn.example.com/x", "5" }, { "http://a.cdn.example.com/api", "4" },
+				{ "ftp://010.000.0.1/pub/file", "7" }, { "ftp://10.0.0.1/x", "0" }, { "mailto://x/", "0" } };
+		for (String[] example : examples) {
+			assertEquals(example[0], Integer.parseInt(example[1]), router.match(UriParserFactory.parse(example[0])));
+		}
+
+		UriRouter empty = new UriRouter();
+		assertEquals(UriRouter.NO_MATCH, empty.match(UriParserFactory.parse("http://h/")));
+		empty.add("*", "*.h", "/", 1);
+		assertEquals("A wildcard needs at least one more label", UriRouter.NO_MATCH,
+				empty.match(UriParserFactory.parse("http://h/")));
+
+		UriParserImplementation legacy = new UriParserImplementation();
+		legacy.setParser("http://example.com/api/v1/x");
+		assertEquals(3, router.match(legacy.parse()));
+
+		UriRouter many = new UriRouter();
+		for (int i = 0; i < 5000; i++) {
+			many.add("http://host" + i + ".example.com/path" + i, i);
+		}
+		assertEquals(4321, many.match(UriParserFactory.parse("http://host4321.example.com/path4321/x")));
+		assertEquals(UriRouter.NO_MATCH, many.match(UriParserFactory.parse("http://host4321.example.com/path4320")));
+	}
+
+	@Test
+	public void testHostTrie() throws Exception {
+		HostTrie trie = new HostTrie.Builder().add("example.com", 1).add(".example.com", 2).add("*.example.com", 3)
+				.add(".ads.example.com", 4).add("www.ads.example.com", 5).add(".org", 6).add("EXAMPLE.NET", 7)
+				.add("example.com", 8).build();
+		assertEquals("Equal patterns replace each other", 7, trie.size());
+
+		String[][] examples = { { "example.com", "8" }, { "www.example.com", "3" }, { "a.b.example.com", "3" },
+				{ "ads.example.com", "4" }, { "x.ads.example.com", "4" }, { "a.b.ads.example.com", "4" },
+				{ "www.ads.example.com", "5" },
+				{ "Example.Org", "6" }, { "example.net", "7" }, { "www.example.net", "-1" }, { "com", "-1" },
+				{ "notexample.com", "-1" }, { "", "-1" } };
+		for (String[] example : examples) {
+			assertEquals(example[0], Integer.parseInt(example[1]), trie.match(example[0]));
+		}
+		assertEquals(4, trie.match(UriParserFactory.parse("http://u@tracker.ads.example.com/x")));
+		assertEquals(HostTrie.NO_MATCH, trie.match(UriParserFactory.parse("http://1.2.3.4/")));
+		assertEquals(HostTrie.NO_MATCH, HostTrie.empty().match("example.com"));
+		HostTrie wildcards = new HostTrie.Builder().add("*.example.com", 1).add(".www.example.com", 2)
+				.add("*.www.example.com", 3).build();
+		assertEquals(HostTrie.NO_MATCH, wildcards.match("example.com"));
+		assertEquals(2, wildcards.match("www.example.com"));
+		assertEquals("A wildcard beats a suffix with the same labels", 3, wildcards.match("a.www.example.com"));
+		assertEquals(1, wildcards.match("a.b.example.com"));
+
+		HostMatcher matcher = new HostMatcher(trie);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			HostTrie rebuilt = matcher.rebuild(builder -> {
+				for (int i = 0; i < 100000; i++) {
+					builder.add(".host" + i + ".example.org", i);
+				}
+			}, pool).get();
+			assertTrue(matcher.get() == rebuilt);
+			assertEquals(100000, rebuilt.size());
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(77777, matcher.match("www.host77777.example.org"));
+		assertEquals(HostTrie.NO_MATCH, matcher.match("example.com"));
+		assertTrue(matcher.swap(trie) != trie);
+		assertEquals(8, matcher.match(new HostImplementation("example.com")));
+	}
+
+	@Test
+	public void testHostMatcherOverlappingRebuilds() throws Exception {
+		HostMatcher matcher = new HostMatcher();
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch newerPublished = new CountDownLatch(1);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			CompletableFuture<HostTrie> older = matcher.rebuild(builder -> {
+				builder.add("example.com", 1);
+				loading.countDown();
+				try {
+					newerPublished.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, pool);
+			loading.await();
+			HostTrie newer = matcher.rebuild(builder -> builder.add("example.com", 2), pool).get();
+			newerPublished.countDown();
+			older.get();
+			assertTrue("The older rebuild must not replace the newer one", matcher.get() == newer);
+			assertEquals(2, matcher.match("example.com"));
+
+			HostTrie swapped = HostTrie.empty();
+			CompletableFuture<HostTrie> beforeSwap = matcher.rebuild(builder -> builder.add("example.com", 3), pool);
+			assertTrue(matcher.swap(swapped) != swapped);
+			beforeSwap.get();
+			assertTrue("A swap is newer than rebuilds called before it", matcher.get() == swapped);
+		} finally {
+			pool.shutdown();
+		}
+	}
 
 }